@@ -0,0 +1,129 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * run a batch of AQL statements concurrently over the connections of a
+ * ConnectionFactory, while statements which conflict keep their order
+ *
+ * Every statement declares the collections it reads and writes. Two
+ * statements conflict if one of them writes a collection the other one reads
+ * or writes; a statement then starts only after all earlier statements it
+ * conflicts with have completed, and runs concurrently with all others.
+ *
+ * The statements run outside of any stream transaction, since a stream
+ * transaction does not accept concurrent requests.
+ */
+public class AqlBatchExecutor {
+
+    private static Logger logger = LoggerFactory.getLogger(AqlBatchExecutor.class);
+
+    /**
+     * an AQL statement with the collections it reads and writes
+     */
+    public static class Statement<T> {
+        private final String name;
+        private final String query;
+        private final Class<T> type;
+        private Map<String, Object> bindVars;
+        private final Set<String> reads = new HashSet<>();
+        private final Set<String> writes = new HashSet<>();
+
+        /**
+         * @param name  the name of the statement, e.g. "Query 1"
+         * @param query the AQL query
+         * @param type  the type of the results
+         */
+        public Statement(String name, String query, Class<T> type) {
+            this.name = name;
+            this.query = query;
+            this.type = type;
+        }
+
+        public Statement<T> bindVars(Map<String, Object> bindVars) {
+            this.bindVars = bindVars;
+            return this;
+        }
+
+        public Statement<T> reads(String... collections) {
+            reads.addAll(Arrays.asList(collections));
+            return this;
+        }
+
+        public Statement<T> writes(String... collections) {
+            writes.addAll(Arrays.asList(collections));
+            return this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private boolean conflictsWith(Statement<?> other) {
+            return !Collections.disjoint(writes, other.writes) || !Collections.disjoint(writes, other.reads)
+                    || !Collections.disjoint(reads, other.writes);
+        }
+    }
+
+    private final ConnectionFactory connections;
+    private final AqlProfiler profiler;
+    private final String dbName;
+    private final ExecutorService pool;
+
+    /**
+     * @param connections the connections to the coordinators
+     * @param profiler    runs the statements, and profiles them if enabled
+     * @param dbName      name of the database
+     * @param threads     the maximum number of statements running at a time
+     */
+    public AqlBatchExecutor(ConnectionFactory connections, AqlProfiler profiler, String dbName, int threads) {
+        this.connections = connections;
+        this.profiler = profiler;
+        this.dbName = dbName;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * start all statements of a batch
+     *
+     * @param statements the statements, in the order conflicting ones must run
+     * @return the results of every statement, in the same order
+     */
+    public List<CompletableFuture<? extends List<?>>> execute(List<Statement<?>> statements) {
+        List<CompletableFuture<? extends List<?>>> futures = new ArrayList<>(statements.size());
+        for (int i = 0; i < statements.size(); i++) {
+            Statement<?> statement = statements.get(i);
+            List<CompletableFuture<?>> dependencies = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                if (statements.get(j).conflictsWith(statement)) {
+                    dependencies.add(futures.get(j));
+                }
+            }
+            logger.debug("{} waits for {} conflicting statements", statement.getName(), dependencies.size());
+            futures.add(submit(statement, dependencies));
+        }
+        return futures;
+    }
+
+    private <T> CompletableFuture<List<T>> submit(Statement<T> statement, List<CompletableFuture<?>> dependencies) {
+        // a failed dependency does not cancel the statement, like the
+        // sequence of statements with one try-catch each does not either
+        CompletableFuture<?>[] after = dependencies.stream()
+                .map(dependency -> dependency.handle((result, e) -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(after).thenApplyAsync(ignored -> connections.execute(
+                arangoDB -> profiler.query(arangoDB.db(DbName.of(dbName)), statement.name, statement.query,
+                        statement.bindVars, statement.type)),
+                pool);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
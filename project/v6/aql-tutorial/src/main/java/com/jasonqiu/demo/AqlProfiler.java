@@ -0,0 +1,288 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.internal.util.ArangoSerializationFactory.Serializer;
+import com.arangodb.velocypack.VPackSlice;
+import com.arangodb.velocystream.Response;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs the named queries of the tutorial, and with profiling enabled records
+ * the profile of each query, which can be written to a JSON report and
+ * compared with a baseline report
+ *
+ * The driver only supports `profile: true`, so a profiled query is sent to
+ * `/_api/cursor` directly with `profile: 2`, which adds the statistics of
+ * every execution node to the phase timings and the query statistics.
+ *
+ * A run regresses if the execution nodes of a query changed (e.g. an index
+ * lookup became a full collection scan), if its scanned or filtered counts or
+ * its peak memory grew by more than `tolerance`, or if it became slower by
+ * more than `timeFactor`.
+ */
+public class AqlProfiler {
+
+    private static Logger logger = LoggerFactory.getLogger(AqlProfiler.class);
+
+    // results per batch of a profiled query
+    private static final int BATCH_SIZE = 1000;
+    // execution time differences below this are noise, in seconds
+    private static final double MIN_TIME_DIFFERENCE = 0.01;
+
+    /**
+     * the statistics of one execution node
+     */
+    public record Node(long id, String type, long calls, long items, double runtime) {
+    }
+
+    /**
+     * the profile of one query
+     *
+     * @param executionTime in seconds
+     * @param phases        the time of each phase, e.g. "parsing",
+     *                      "optimizing plan", "executing", in seconds
+     */
+    public record Profile(String name, String query, double executionTime, long scannedFull, long scannedIndex,
+            long filtered, long peakMemoryUsage, Map<String, Double> phases, List<Node> nodes) {
+    }
+
+    /**
+     * the results of one query
+     *
+     * @param executionTime as reported by the server, in seconds
+     */
+    public record Result<T>(List<T> results, double executionTime) {
+    }
+
+    private final ArangoDatabase db;
+    private final boolean enabled;
+    private final double tolerance;
+    private final double timeFactor;
+    // guarded by itself, queries may run concurrently on other connections
+    private final Map<String, Profile> profiles = new LinkedHashMap<>();
+
+    /**
+     * @param db      ArangoDatabase
+     * @param enabled whether the queries are profiled
+     */
+    public AqlProfiler(ArangoDatabase db, boolean enabled) {
+        this(db, enabled, 0.2, 3.0);
+    }
+
+    /**
+     * @param tolerance  the relative growth of the scanned and filtered counts
+     *                   and of the peak memory allowed by `compare`
+     * @param timeFactor the factor by which a query may become slower
+     */
+    public AqlProfiler(ArangoDatabase db, boolean enabled, double tolerance, double timeFactor) {
+        this.db = db;
+        this.enabled = enabled;
+        this.tolerance = tolerance;
+        this.timeFactor = timeFactor;
+    }
+
+    public ArangoDatabase getDatabase() {
+        return db;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * run a query, profiled if enabled
+     *
+     * @param name     the name of the query in the report, e.g. "Query 17";
+     *                 repeated names get a suffix "#2", "#3", ...
+     * @param query    the AQL query
+     * @param bindVars bind parameters, or null
+     * @param type     the type of the results
+     * @return all results of the query
+     */
+    public <T> List<T> query(String name, String query, Map<String, Object> bindVars, Class<T> type) {
+        return run(db, name, query, bindVars, type).results();
+    }
+
+    /**
+     * run a query on another ArangoDatabase instance of the same database,
+     * e.g. on another coordinator
+     */
+    public <T> List<T> query(ArangoDatabase db, String name, String query, Map<String, Object> bindVars,
+            Class<T> type) {
+        return run(db, name, query, bindVars, type).results();
+    }
+
+    /**
+     * same as `query`, with the execution time of the query on the server
+     */
+    public <T> Result<T> run(String name, String query, Map<String, Object> bindVars, Class<T> type) {
+        return run(db, name, query, bindVars, type);
+    }
+
+    public <T> Result<T> run(ArangoDatabase db, String name, String query, Map<String, Object> bindVars,
+            Class<T> type) {
+        // every query is timed by the DriverMetrics, profiled or not
+        return DriverMetrics.shared().record("query", name, 0, () -> {
+            if (!enabled) {
+                ArangoCursor<T> cursor = db.query(query, bindVars, null, type);
+                double executionTime = cursor.getStats().getExecutionTime();
+                return new Result<>(cursor.asListRemaining(), executionTime);
+            }
+            return queryProfiled(db, name, query, bindVars, type);
+        });
+    }
+
+    private <T> Result<T> queryProfiled(ArangoDatabase db, String name, String query, Map<String, Object> bindVars,
+            Class<T> type) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", query);
+        if (bindVars != null) {
+            body.put("bindVars", bindVars);
+        }
+        body.put("batchSize", BATCH_SIZE);
+        body.put("options", Map.of("profile", 2));
+        VPackSlice response = db.route("/_api/cursor").withBody(body).post().getBody();
+
+        List<T> results = new ArrayList<>();
+        VPackSlice extra = null;
+        while (true) {
+            for (Iterator<VPackSlice> it = response.get("result").arrayIterator(); it.hasNext();) {
+                results.add(db.util(Serializer.CUSTOM).deserialize(it.next(), type));
+            }
+            if (response.get("extra").isObject()) {
+                extra = response.get("extra");
+            }
+            if (!response.get("hasMore").getAsBoolean()) {
+                break;
+            }
+            Response next = db.route("/_api/cursor/" + response.get("id").getAsString()).put();
+            response = next.getBody();
+        }
+
+        Profile profile;
+        synchronized (profiles) {
+            profile = toProfile(uniqueName(name), query, extra);
+            profiles.put(profile.name(), profile);
+        }
+        return new Result<>(results, profile.executionTime());
+    }
+
+    public List<Profile> getProfiles() {
+        synchronized (profiles) {
+            return new ArrayList<>(profiles.values());
+        }
+    }
+
+    /**
+     * write the profiles of all queries as a JSON report
+     */
+    public void writeReport(Path file) throws IOException {
+        List<Profile> report = getProfiles();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        logger.info("Wrote the profiles of {} queries to {}", report.size(), file);
+    }
+
+    /**
+     * compare the profiles with a report of an earlier run
+     *
+     * @param baseline a report written by `writeReport`
+     * @return a description of every regression, empty if there is none
+     */
+    public List<String> compare(Path baseline) throws IOException {
+        List<Profile> expected = new ObjectMapper().readValue(Files.readAllBytes(baseline),
+                new TypeReference<List<Profile>>() {
+                });
+        Map<String, Profile> current = new HashMap<>();
+        getProfiles().forEach(profile -> current.put(profile.name(), profile));
+        List<String> regressions = new ArrayList<>();
+        for (Profile before : expected) {
+            Profile after = current.get(before.name());
+            if (after == null) {
+                regressions.add(before.name() + ": not run");
+                continue;
+            }
+            List<String> typesBefore = nodeTypes(before);
+            List<String> typesAfter = nodeTypes(after);
+            if (!typesBefore.equals(typesAfter)) {
+                regressions.add(String.format("%s: plan changed from %s to %s", before.name(), typesBefore,
+                        typesAfter));
+            }
+            grew(regressions, before.name(), "scannedFull", before.scannedFull(), after.scannedFull());
+            grew(regressions, before.name(), "scannedIndex", before.scannedIndex(), after.scannedIndex());
+            grew(regressions, before.name(), "filtered", before.filtered(), after.filtered());
+            grew(regressions, before.name(), "peakMemoryUsage", before.peakMemoryUsage(), after.peakMemoryUsage());
+            if (after.executionTime() > before.executionTime() * timeFactor
+                    && after.executionTime() - before.executionTime() > MIN_TIME_DIFFERENCE) {
+                regressions.add(String.format("%s: executionTime %.5f s -> %.5f s", before.name(),
+                        before.executionTime(), after.executionTime()));
+            }
+        }
+        return regressions;
+    }
+
+    private void grew(List<String> regressions, String name, String stat, long before, long after) {
+        if (after > before * (1 + tolerance)) {
+            regressions.add(String.format("%s: %s %d -> %d", name, stat, before, after));
+        }
+    }
+
+    private static List<String> nodeTypes(Profile profile) {
+        List<String> types = new ArrayList<>();
+        profile.nodes().forEach(node -> types.add(node.type()));
+        return types;
+    }
+
+    private String uniqueName(String name) {
+        String unique = name;
+        for (int i = 2; profiles.containsKey(unique); i++) {
+            unique = name + "#" + i;
+        }
+        return unique;
+    }
+
+    private static Profile toProfile(String name, String query, VPackSlice extra) {
+        VPackSlice stats = extra.get("stats");
+        Map<String, Double> phases = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, VPackSlice>> it = extra.get("profile").objectIterator(); it.hasNext();) {
+            Map.Entry<String, VPackSlice> phase = it.next();
+            phases.put(phase.getKey(), getDouble(phase.getValue()));
+        }
+
+        // the types come from the plan, the statistics from the stats, by id
+        Map<Long, String> types = new HashMap<>();
+        for (Iterator<VPackSlice> it = extra.get("plan").get("nodes").arrayIterator(); it.hasNext();) {
+            VPackSlice node = it.next();
+            types.put(node.get("id").getAsLong(), node.get("type").getAsString());
+        }
+        List<Node> nodes = new ArrayList<>();
+        for (Iterator<VPackSlice> it = stats.get("nodes").arrayIterator(); it.hasNext();) {
+            VPackSlice node = it.next();
+            long id = node.get("id").getAsLong();
+            nodes.add(new Node(id, types.getOrDefault(id, "unknown"), node.get("calls").getAsLong(),
+                    node.get("items").getAsLong(), getDouble(node.get("runtime"))));
+        }
+
+        return new Profile(name, query, getDouble(stats.get("executionTime")), getLong(stats, "scannedFull"),
+                getLong(stats, "scannedIndex"), getLong(stats, "filtered"), getLong(stats, "peakMemoryUsage"),
+                phases, nodes);
+    }
+
+    // the server sends whole numbers as integers
+    private static double getDouble(VPackSlice value) {
+        return value.getAsNumber().doubleValue();
+    }
+
+    private static long getLong(VPackSlice object, String attribute) {
+        VPackSlice value = object.get(attribute);
+        return value.isNumber() ? value.getAsLong() : 0;
+    }
+}
@@ -0,0 +1,241 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * an opt-in client-side cache of AQL query results
+ *
+ * Read queries are cached by their text, with whitespace outside of string
+ * literals normalized, their bind parameters and the result type. An entry
+ * expires after `ttlMillis`, and the least recently used entry is evicted
+ * once there are more than `maxEntries`.
+ *
+ * Writes from this client go through `write`, which drops every entry reading
+ * from a collection the write touches. The collections of a query are taken
+ * from the server's parse result (once per query text), from the collection
+ * bind parameters like "@@collection", and from those passed explicitly, e.g.
+ * the edge collections of a named graph. Writes by other clients are only
+ * seen after the entries expire.
+ *
+ * Queries run through an AqlProfiler, so they are profiled under their name
+ * when profiling is enabled. They run outside of the lock of the cache, so a
+ * slow query does not hold up the other callers; concurrent misses of the same
+ * entry share one query.
+ *
+ * A cached result is the same list, with the same elements, for every caller:
+ * the list is unmodifiable, but documents like BaseDocument are not, and must
+ * not be modified by the callers.
+ */
+public class AqlResultCache {
+
+    private static Logger logger = LoggerFactory.getLogger(AqlResultCache.class);
+
+    private record Key(String query, Map<String, Object> bindVars, Class<?> type) {
+    }
+
+    private record Entry(List<?> result, Set<String> collections, long expiresAt) {
+    }
+
+    private final ArangoDatabase db;
+    private final AqlProfiler profiler;
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries;
+    // the queries running for missing entries
+    private final Map<Key, CompletableFuture<List<?>>> loading = new ConcurrentHashMap<>();
+    // the collections accessed by each normalized query text
+    private final Map<String, Set<String>> parsedCollections = new ConcurrentHashMap<>();
+    // incremented by every invalidation, so that a result read before an
+    // invalidation is not cached after it
+    private long generation;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param profiler   runs the queries, on its ArangoDatabase
+     * @param maxEntries the maximum number of cached results
+     * @param ttlMillis  how long a result is served from the cache
+     */
+    public AqlResultCache(AqlProfiler profiler, int maxEntries, long ttlMillis) {
+        this.db = profiler.getDatabase();
+        this.profiler = profiler;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        // access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * run a read query, or return its cached result
+     *
+     * @param name        the name of the query for the profiler
+     * @param query       the AQL query, which must not write
+     * @param bindVars    bind parameters, or null
+     * @param type        the type of the results
+     * @param collections collections read by the query in addition to those
+     *                    found by parsing it
+     * @return the results, unmodifiable and shared with other callers
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> query(String name, String query, Map<String, Object> bindVars, Class<T> type,
+            String... collections) {
+        String text = normalize(query);
+        Key key = new Key(text, bindVars == null ? Map.of() : new HashMap<>(bindVars), type);
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+                hits++;
+                return (List<T>) entry.result();
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        CompletableFuture<List<?>> future = new CompletableFuture<>();
+        CompletableFuture<List<?>> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return (List<T>) running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            List<T> result = Collections.unmodifiableList(profiler.query(name, query, bindVars, type));
+            Set<String> read = collections(query, text, bindVars, collections);
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    entries.put(key, new Entry(result, read, System.nanoTime() + ttlNanos));
+                }
+            }
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * run a write query, and drop the cached results of the collections it
+     * touches, even if it fails, since it may have written partly
+     *
+     * @param name        the name of the query for the profiler
+     * @param query       the AQL query
+     * @param bindVars    bind parameters, or null
+     * @param type        the type of the results
+     * @param collections collections written by the query in addition to
+     *                    those found by parsing it
+     * @return the results of the query
+     */
+    public <T> List<T> write(String name, String query, Map<String, Object> bindVars, Class<T> type,
+            String... collections) {
+        try {
+            return profiler.query(name, query, bindVars, type);
+        } finally {
+            invalidate(collections(query, normalize(query), bindVars, collections));
+        }
+    }
+
+    /**
+     * drop the cached results reading from any of the collections,
+     * e.g. after writing them with the Java Driver API
+     */
+    public synchronized void invalidate(Collection<String> collections) {
+        generation++;
+        int size = entries.size();
+        entries.values().removeIf(entry -> !Collections.disjoint(entry.collections(), collections));
+        if (entries.size() < size) {
+            logger.debug("Invalidated {} cached results of {}", size - entries.size(), collections);
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AqlResultCache: %d entries, %d hits, %d misses", entries.size(), hits, misses);
+    }
+
+    // the original query is parsed, since a normalized "//" comment would run
+    // until the end of the text
+    private Set<String> collections(String query, String text, Map<String, Object> bindVars, String[] extra) {
+        Set<String> parsed = parsedCollections.get(text);
+        if (parsed == null) {
+            // parsed outside of computeIfAbsent, which would block the map
+            // during the request
+            parsed = new HashSet<>(db.parseQuery(query).getCollections());
+            parsedCollections.putIfAbsent(text, parsed);
+        }
+        Set<String> collections = new HashSet<>(parsed);
+        if (bindVars != null) {
+            bindVars.forEach((name, value) -> {
+                if (name.startsWith("@")) {
+                    collections.add(value.toString());
+                }
+            });
+        }
+        collections.addAll(Arrays.asList(extra));
+        return collections;
+    }
+
+    // collapse whitespace outside of string literals, so that the same query
+    // written with a different layout shares the same entry
+    static String normalize(String query) {
+        StringBuilder text = new StringBuilder(query.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (quote != 0) {
+                text.append(c);
+                if (c == '\\' && i + 1 < query.length()) {
+                    text.append(query.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = text.length() > 0;
+            } else {
+                if (space) {
+                    text.append(' ');
+                    space = false;
+                }
+                if (c == '"' || c == '\'' || c == '`') {
+                    quote = c;
+                }
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+}
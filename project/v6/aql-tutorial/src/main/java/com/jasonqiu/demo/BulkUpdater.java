@@ -0,0 +1,164 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.entity.ErrorEntity;
+import com.arangodb.entity.MultiDocumentEntity;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * partially update many documents by key with the Java Driver, instead of an
+ * AQL UPDATE loop
+ *
+ * The (key, partial document) pairs are grouped into `updateDocuments`
+ * batches, up to `parallelism` of them in flight over the connections of a
+ * ConnectionFactory. A document rejected with a write-write conflict is
+ * retried on its own, in the next batch of retries, instead of failing its
+ * batch.
+ */
+public class BulkUpdater {
+
+    private static Logger logger = LoggerFactory.getLogger(BulkUpdater.class);
+
+    // https://www.arangodb.com/docs/stable/appendix-error-codes.html#1200
+    private static final int ERROR_CONFLICT = 1200;
+    // the pause before a retry, multiplied by the attempt
+    private static final long RETRY_DELAY_MILLIS = 10;
+
+    private final ConnectionFactory connections;
+    private final String dbName;
+    private final String collection;
+    private final int batchSize;
+    private final int parallelism;
+    private final int maxRetries;
+
+    /**
+     * @param connections the connections to the coordinators
+     * @param dbName      name of the database
+     * @param collection  name of the collection
+     * @param batchSize   number of documents per `updateDocuments` call
+     * @param parallelism the maximum number of batches in flight
+     * @param maxRetries  how often a document with a conflict is retried
+     */
+    public BulkUpdater(ConnectionFactory connections, String dbName, String collection, int batchSize,
+            int parallelism, int maxRetries) {
+        this.connections = connections;
+        this.dbName = dbName;
+        this.collection = collection;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * apply all patches, returns after every document has been updated, has
+     * failed, or has run out of retries
+     *
+     * @param patches the key of a document and the attributes to update
+     * @return the statistics of the update
+     */
+    public UpdateStats update(Stream<Map.Entry<String, Map<String, Object>>> patches) {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        Semaphore inFlight = new Semaphore(parallelism);
+        AtomicLong updated = new AtomicLong();
+        AtomicLong conflicts = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long start = System.nanoTime();
+        try {
+            List<Map<String, Object>> pending = new ArrayList<>();
+            List<Future<?>> futures = new ArrayList<>();
+            Iterator<Map.Entry<String, Map<String, Object>>> it = patches.iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Map<String, Object>> patch = it.next();
+                Map<String, Object> doc = new HashMap<>(patch.getValue());
+                doc.put("_key", patch.getKey());
+                pending.add(doc);
+                if (pending.size() == batchSize || !it.hasNext()) {
+                    List<Map<String, Object>> batch = pending;
+                    pending = new ArrayList<>();
+                    inFlight.acquireUninterruptibly();
+                    futures.add(pool.submit(() -> {
+                        try {
+                            updateBatch(batch, updated, conflicts, failed);
+                            return null;
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ArangoDBException(e);
+        } catch (ExecutionException e) {
+            throw new ArangoDBException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        UpdateStats stats = new UpdateStats(collection, updated.get(), conflicts.get(), failed.get(),
+                System.nanoTime() - start);
+        logger.info(stats.toString());
+        return stats;
+    }
+
+    // update a batch, then retry the documents with a conflict until none is
+    // left or the retries are used up
+    private void updateBatch(List<Map<String, Object>> batch, AtomicLong updated, AtomicLong conflicts,
+            AtomicLong failed) throws InterruptedException {
+        List<Map<String, Object>> docs = batch;
+        for (int attempt = 0; !docs.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+            }
+            List<Map<String, Object>> request = docs;
+            MultiDocumentEntity<?> result = connections.execute(arangoDB -> DriverMetrics.shared()
+                    .updateDocuments(arangoDB.db(DbName.of(dbName)).collection(collection), request));
+            List<Map<String, Object>> retries = new ArrayList<>();
+            // the documents and errors are in the order of the request
+            int i = 0;
+            for (Object item : result.getDocumentsAndErrors()) {
+                Map<String, Object> doc = request.get(i++);
+                if (!(item instanceof ErrorEntity)) {
+                    updated.incrementAndGet();
+                } else if (((ErrorEntity) item).getErrorNum() == ERROR_CONFLICT && attempt < maxRetries) {
+                    conflicts.incrementAndGet();
+                    retries.add(doc);
+                } else {
+                    failed.incrementAndGet();
+                    logger.warn("Failed to update document \"{}\": {}", doc.get("_key"),
+                            ((ErrorEntity) item).getErrorMessage());
+                }
+            }
+            docs = retries;
+        }
+    }
+
+    /**
+     * the number of documents updated, the conflicts retried, and the time it
+     * took
+     *
+     * @param conflicts the number of write-write conflicts, each one retried
+     */
+    public record UpdateStats(String collection, long updated, long conflicts, long failed, long nanos) {
+
+        public double docsPerSecond() {
+            return nanos == 0 ? 0 : updated * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Collection \"%s\": %d docs updated (%d conflicts retried, %d failed) "
+                    + "in %.1f ms, %.0f docs/s", collection, updated, conflicts, failed, nanos / 1e6,
+                    docsPerSecond());
+        }
+    }
+}
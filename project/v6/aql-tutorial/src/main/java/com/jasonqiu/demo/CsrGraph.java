@@ -0,0 +1,355 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.entity.EdgeDefinition;
+import com.arangodb.entity.GraphEntity;
+import com.arangodb.model.AqlQueryOptions;
+import com.arangodb.velocypack.VPackSlice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * an in-memory projection of a named graph, e.g. "social" or "socialNetwork",
+ * in compressed sparse row (CSR) format
+ *
+ * Vertices are numbered 0..n-1, and the outbound edges of vertex v are the
+ * positions offsets[v]..offsets[v+1]-1 of `targets`, so a traversal touches
+ * only primitive arrays. The position of an edge in `targets` is its id.
+ *
+ * The traversal follows the defaults of an AQL `OUTBOUND` traversal: an edge
+ * is used at most once per path, while vertices may repeat (uniqueVertices
+ * "none", uniqueEdges "path").
+ */
+public class CsrGraph {
+
+    private static Logger logger = LoggerFactory.getLogger(CsrGraph.class);
+
+    // number of documents per batch of the stream cursors reading the graph
+    private static final int BATCH_SIZE = 10000;
+
+    /**
+     * called for every path of a traversal, the arrays are only valid during
+     * the call
+     */
+    @FunctionalInterface
+    public interface PathVisitor {
+        /**
+         * @param vertices the vertices of the path, vertices[0..depth]
+         * @param edges    the edges of the path, edges[0..depth-1]
+         * @param depth    the number of edges of the path
+         */
+        void visit(int[] vertices, int[] edges, int depth);
+    }
+
+    private final String[] ids;
+    private final String[] labels;
+    private final String[] collections;
+    // index of the collection of every vertex in `collections`
+    private final int[] collectionOf;
+    private final int[] offsets;
+    private final int[] targets;
+    private final Map<String, Integer> index;
+
+    private CsrGraph(String[] ids, String[] labels, String[] collections, int[] collectionOf, int[] offsets,
+            int[] targets, Map<String, Integer> index) {
+        this.ids = ids;
+        this.labels = labels;
+        this.collections = collections;
+        this.collectionOf = collectionOf;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.index = index;
+    }
+
+    /**
+     * read all vertex and edge collections of a named graph
+     *
+     * @param db             ArangoDatabase
+     * @param graphName      name of the graph
+     * @param labelAttribute attribute used as the label of a vertex, e.g.
+     *                       "name"; null to use the _id
+     * @return the projection of the graph
+     */
+    public static CsrGraph load(ArangoDatabase db, String graphName, String labelAttribute) {
+        long start = System.nanoTime();
+        GraphEntity graph = DriverMetrics.shared().record("getGraph", graphName, 0,
+                () -> db.graph(graphName).getInfo());
+        Set<String> vertexCollections = new LinkedHashSet<>();
+        List<String> edgeCollections = new ArrayList<>();
+        for (EdgeDefinition definition : graph.getEdgeDefinitions()) {
+            edgeCollections.add(definition.getCollection());
+            vertexCollections.addAll(definition.getFrom());
+            vertexCollections.addAll(definition.getTo());
+        }
+        if (graph.getOrphanCollections() != null) {
+            vertexCollections.addAll(graph.getOrphanCollections());
+        }
+
+        Builder builder = new Builder(new ArrayList<>(vertexCollections));
+        String vertexQuery = labelAttribute == null
+                ? "FOR v IN @@collection RETURN [v._id]"
+                : "FOR v IN @@collection RETURN [v._id, v.@label]";
+        for (String collection : vertexCollections) {
+            Map<String, Object> bindVars = new HashMap<>();
+            bindVars.put("@collection", collection);
+            if (labelAttribute != null) {
+                bindVars.put("label", labelAttribute);
+            }
+            forEach(db, collection, vertexQuery, bindVars, row -> {
+                VPackSlice label = row.size() > 1 ? row.get(1) : null;
+                if (label == null || label.isNull()) {
+                    builder.addVertex(row.get(0).getAsString(), null);
+                } else {
+                    builder.addVertex(row.get(0).getAsString(),
+                            label.isString() ? label.getAsString() : label.toString());
+                }
+            });
+        }
+        for (String collection : edgeCollections) {
+            forEach(db, collection, "FOR e IN @@collection RETURN [e._from, e._to]",
+                    Map.of("@collection", collection),
+                    row -> builder.addEdge(row.get(0).getAsString(), row.get(1).getAsString()));
+        }
+        CsrGraph csr = builder.build();
+        logger.info("Projected graph \"{}\": {} vertices, {} edges in {} ms", graphName, csr.vertexCount(),
+                csr.edgeCount(), (System.nanoTime() - start) / 1_000_000);
+        return csr;
+    }
+
+    /**
+     * a graph of edges given as the ids of their source and target vertices,
+     * without a database, e.g. for checks
+     *
+     * @param edges e.g. { "v/0", "v/1" }, the vertices are labelled by their ids
+     * @return the projection of the edges
+     */
+    static CsrGraph of(String[]... edges) {
+        Builder builder = new Builder(new ArrayList<>());
+        for (String[] edge : edges) {
+            builder.addEdge(edge[0], edge[1]);
+        }
+        return builder.build();
+    }
+
+    // read a query of a collection with a stream cursor, one row at a time;
+    // timed as the operation "loadGraph" on the collection
+    private static void forEach(ArangoDatabase db, String collection, String query, Map<String, Object> bindVars,
+            Consumer<VPackSlice> action) {
+        AqlQueryOptions options = new AqlQueryOptions().stream(true).batchSize(BATCH_SIZE);
+        DriverMetrics.shared().record("loadGraph", collection, 0, () -> {
+            try (ArangoCursor<VPackSlice> cursor = db.query(query, bindVars, options, VPackSlice.class)) {
+                cursor.forEachRemaining(action);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    public int vertexCount() {
+        return ids.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param id the _id of a vertex, e.g. "female/alice"
+     * @return the number of the vertex, or -1 if there is no such vertex
+     */
+    public int indexOf(String id) {
+        return index.getOrDefault(id, -1);
+    }
+
+    public String getId(int vertex) {
+        return ids[vertex];
+    }
+
+    public String getLabel(int vertex) {
+        return labels[vertex];
+    }
+
+    public String getCollection(int vertex) {
+        return collections[collectionOf[vertex]];
+    }
+
+    public int outDegree(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    /**
+     * @return the first outbound edge of a vertex
+     */
+    public int firstEdge(int vertex) {
+        return offsets[vertex];
+    }
+
+    /**
+     * @return the outbound edge after the last one of a vertex,
+     *         i.e., the edges of the vertex are firstEdge..endEdge-1
+     */
+    public int endEdge(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    /**
+     * @return the vertex an edge points to
+     */
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * visit every outbound path of `minDepth` to `maxDepth` edges from `start`,
+     * by a depth-first search without recursion
+     */
+    public void traverse(int start, int minDepth, int maxDepth, PathVisitor visitor) {
+        int[] vertices = new int[maxDepth + 1];
+        int[] edges = new int[Math.max(maxDepth, 1)];
+        // the next edge to follow from the vertex at each depth
+        int[] next = new int[maxDepth + 1];
+        vertices[0] = start;
+        next[0] = offsets[start];
+        if (minDepth == 0) {
+            visitor.visit(vertices, edges, 0);
+        }
+        int depth = 0;
+        while (depth >= 0) {
+            int vertex = vertices[depth];
+            if (depth == maxDepth || next[depth] == offsets[vertex + 1]) {
+                depth--;
+                continue;
+            }
+            int edge = next[depth]++;
+            if (onPath(edges, depth, edge)) {
+                continue;
+            }
+            edges[depth] = edge;
+            depth++;
+            vertices[depth] = targets[edge];
+            next[depth] = offsets[targets[edge]];
+            if (depth >= minDepth) {
+                visitor.visit(vertices, edges, depth);
+            }
+        }
+    }
+
+    /**
+     * the local equivalent of Query 17:
+     * `FOR vertex, edge, path IN minDepth..maxDepth OUTBOUND start ...
+     * RETURN CONCAT_SEPARATOR("->", path.vertices[*].name)`
+     *
+     * @param start the _id of the start vertex
+     * @return the labels of the vertices of every path, joined by "->"
+     */
+    public List<String> paths(String start, int minDepth, int maxDepth) {
+        int vertex = indexOf(start);
+        if (vertex < 0) {
+            return Collections.emptyList();
+        }
+        List<String> paths = new ArrayList<>();
+        traverse(vertex, minDepth, maxDepth, (vertices, edges, depth) -> paths.add(join(vertices, depth)));
+        return paths;
+    }
+
+    /**
+     * @return the labels of vertices[0..depth], joined by "->"
+     */
+    public String join(int[] vertices, int depth) {
+        StringBuilder path = new StringBuilder(labels[vertices[0]]);
+        for (int i = 1; i <= depth; i++) {
+            path.append("->").append(labels[vertices[i]]);
+        }
+        return path.toString();
+    }
+
+    private static boolean onPath(int[] edges, int depth, int edge) {
+        for (int i = 0; i < depth; i++) {
+            if (edges[i] == edge) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // collects the vertices and edges, then sorts the edges by source vertex
+    private static class Builder {
+        private final List<String> collections;
+        private final Map<String, Integer> collectionIndex = new HashMap<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> labels = new ArrayList<>();
+        private int[] collectionOf = new int[1024];
+        private int[] sources = new int[1024];
+        private int[] destinations = new int[1024];
+        private int edges;
+
+        private Builder(List<String> collections) {
+            this.collections = new ArrayList<>(collections);
+            for (int i = 0; i < collections.size(); i++) {
+                collectionIndex.put(collections.get(i), i);
+            }
+        }
+
+        private int addVertex(String id, String label) {
+            Integer vertex = index.get(id);
+            if (vertex != null) {
+                return vertex;
+            }
+            int v = ids.size();
+            String collection = id.substring(0, id.indexOf('/'));
+            Integer c = collectionIndex.get(collection);
+            if (c == null) {
+                // an edge to a collection outside of the graph definition
+                c = collections.size();
+                collections.add(collection);
+                collectionIndex.put(collection, c);
+            }
+            if (v == collectionOf.length) {
+                collectionOf = Arrays.copyOf(collectionOf, v * 2);
+            }
+            collectionOf[v] = c;
+            index.put(id, v);
+            ids.add(id);
+            labels.add(label == null ? id : label);
+            return v;
+        }
+
+        private void addEdge(String from, String to) {
+            if (edges == sources.length) {
+                sources = Arrays.copyOf(sources, edges * 2);
+                destinations = Arrays.copyOf(destinations, edges * 2);
+            }
+            // edges to vertices which do not exist (any more) are kept
+            sources[edges] = addVertex(from, null);
+            destinations[edges] = addVertex(to, null);
+            edges++;
+        }
+
+        private CsrGraph build() {
+            int n = ids.size();
+            int[] offsets = new int[n + 1];
+            for (int e = 0; e < edges; e++) {
+                offsets[sources[e] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            // a counting sort, stable, so the edges of a vertex keep their order
+            int[] targets = new int[edges];
+            int[] fill = Arrays.copyOf(offsets, n);
+            for (int e = 0; e < edges; e++) {
+                targets[fill[sources[e]]++] = destinations[e];
+            }
+            return new CsrGraph(ids.toArray(new String[0]), labels.toArray(new String[0]),
+                    collections.toArray(new String[0]), Arrays.copyOf(collectionOf, n), offsets, targets, index);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.jasonqiu.demo;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * enumerate the directed cycles of a CsrGraph, the local replacement of
+ * Queries 19 and 20
+ *
+ * Query 19 starts a traversal from every edge and reports a cycle once for
+ * every vertex on it. Here a cycle is only searched from its smallest vertex,
+ * by a depth-first search which never enters a vertex smaller than the start
+ * or already on the path. The search runs on a copy of the adjacency lists
+ * without parallel edges, so every simple cycle is found exactly once, as the
+ * sequence of its vertices beginning with the smallest one.
+ *
+ * The start vertices are split into ranges which are searched in parallel by
+ * a ForkJoinPool.
+ */
+public class CycleFinder {
+
+    private static Logger logger = LoggerFactory.getLogger(CycleFinder.class);
+
+    // the number of ranges per worker, so that ranges with large cycles
+    // do not leave the other workers idle
+    private static final int RANGES_PER_WORKER = 8;
+
+    private final CsrGraph graph;
+    private final int minLength;
+    private final int maxLength;
+    // the vertices a cycle may pass, null for all
+    private final boolean[] allowed;
+    // the adjacency lists of the graph without parallel edges: the distinct
+    // targets of vertex v are targets[offsets[v]..offsets[v+1]-1]
+    private final int[] offsets;
+    private final int[] targets;
+
+    /**
+     * @param graph     the projected graph
+     * @param minLength the minimum number of edges of a cycle, 2 in Query 19
+     * @param maxLength the maximum number of edges of a cycle, 5 in Query 19
+     * @throws IllegalArgumentException if maxLength is less than 1 or than
+     *                                  minLength
+     */
+    public CycleFinder(CsrGraph graph, int minLength, int maxLength) {
+        this(graph, minLength, maxLength, (String[]) null);
+    }
+
+    /**
+     * @param collections only cycles within these vertex collections, like
+     *                    `PRUNE NOT IS_SAME_COLLECTION("male", vertex)` in
+     *                    Query 20
+     */
+    public CycleFinder(CsrGraph graph, int minLength, int maxLength, String... collections) {
+        if (maxLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("Invalid cycle length " + minLength + ".." + maxLength);
+        }
+        this.graph = graph;
+        this.minLength = Math.max(minLength, 1);
+        this.maxLength = maxLength;
+        if (collections == null) {
+            this.allowed = null;
+        } else {
+            Set<String> names = Set.of(collections);
+            this.allowed = new boolean[graph.vertexCount()];
+            for (int v = 0; v < allowed.length; v++) {
+                allowed[v] = names.contains(graph.getCollection(v));
+            }
+        }
+        int n = graph.vertexCount();
+        this.offsets = new int[n + 1];
+        int[] distinct = new int[graph.edgeCount()];
+        // the last vertex each target was seen from, plus 1
+        int[] seenFrom = new int[n];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                int target = graph.target(e);
+                if (seenFrom[target] != v + 1) {
+                    seenFrom[target] = v + 1;
+                    distinct[count++] = target;
+                }
+            }
+            offsets[v + 1] = count;
+        }
+        this.targets = Arrays.copyOf(distinct, count);
+    }
+
+    /**
+     * @return the cycles, each as its vertices starting with the smallest one,
+     *         without repeating it at the end
+     */
+    public List<int[]> find() {
+        return find(ForkJoinPool.commonPool());
+    }
+
+    public List<int[]> find(ForkJoinPool pool) {
+        long start = System.nanoTime();
+        int n = graph.vertexCount();
+        int rangeSize = Math.max(1, n / (pool.getParallelism() * RANGES_PER_WORKER));
+        List<int[]> cycles = pool.invoke(new Search(0, n, rangeSize));
+        logger.info("Found {} cycles of {}..{} edges among {} vertices in {} ms", cycles.size(), minLength,
+                maxLength, n, (System.nanoTime() - start) / 1_000_000);
+        return cycles;
+    }
+
+    /**
+     * @return the labels of a cycle joined by "->", back to the first vertex,
+     *         like the result of Query 19
+     */
+    public String format(int[] cycle) {
+        StringBuilder path = new StringBuilder();
+        for (int vertex : cycle) {
+            path.append(graph.getLabel(vertex)).append("->");
+        }
+        return path.append(graph.getLabel(cycle[0])).toString();
+    }
+
+    @SuppressWarnings("serial")
+    private class Search extends RecursiveTask<List<int[]>> {
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+
+        private Search(int from, int to, int rangeSize) {
+            this.from = from;
+            this.to = to;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            if (to - from <= rangeSize) {
+                List<int[]> cycles = new ArrayList<>();
+                boolean[] onPath = new boolean[graph.vertexCount()];
+                for (int v = from; v < to; v++) {
+                    if (allowed == null || allowed[v]) {
+                        search(v, onPath, cycles);
+                    }
+                }
+                return cycles;
+            }
+            int middle = (from + to) >>> 1;
+            Search left = new Search(from, middle, rangeSize);
+            left.fork();
+            List<int[]> cycles = new Search(middle, to, rangeSize).compute();
+            List<int[]> leftCycles = left.join();
+            leftCycles.addAll(cycles);
+            return leftCycles;
+        }
+    }
+
+    // a depth-first search of the cycles through `start` whose other
+    // vertices are all larger than `start`
+    private void search(int start, boolean[] onPath, List<int[]> cycles) {
+        int[] vertices = new int[maxLength];
+        // the position in `targets` of the next target of each depth
+        int[] next = new int[maxLength];
+        vertices[0] = start;
+        next[0] = offsets[start];
+        onPath[start] = true;
+        int depth = 0;
+        while (depth >= 0) {
+            int vertex = vertices[depth];
+            if (next[depth] == offsets[vertex + 1]) {
+                onPath[vertex] = false;
+                depth--;
+                continue;
+            }
+            int target = targets[next[depth]++];
+            if (target == start) {
+                if (depth + 1 >= minLength) {
+                    cycles.add(Arrays.copyOf(vertices, depth + 1));
+                }
+            } else if (target > start && !onPath[target] && depth + 1 < maxLength
+                    && (allowed == null || allowed[target])) {
+                depth++;
+                vertices[depth] = target;
+                next[depth] = offsets[target];
+                onPath[target] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.entity.BaseDocument;
+import com.arangodb.util.ArangoSerialization;
+import com.arangodb.velocypack.VPackSlice;
+
+import java.util.*;
+
+/**
+ * a read-only view of a document in the velocypack of a query result
+ *
+ * Nothing is decoded up front: an attribute is only looked up and decoded
+ * when it is read, directly from the buffer of the response, and the whole
+ * document is only deserialized by `as` or `toBaseDocument`. A view can be
+ * reused as a flyweight by `wrap`, see `Utils.forEachDocument`; it is only
+ * valid as long as the batch holding its document is.
+ */
+public class DocumentView {
+
+    private final ArangoSerialization serialization;
+    private VPackSlice slice;
+
+    /**
+     * @param serialization deserializes the document on `as`, e.g.
+     *                      `db.util(Serializer.CUSTOM)`, which builds any type
+     *                      the serializer of the connection (ArangoJack) can
+     */
+    public DocumentView(ArangoSerialization serialization) {
+        this.serialization = serialization;
+    }
+
+    /**
+     * point this view to another document
+     *
+     * @param slice a velocypack object
+     * @return this view
+     */
+    public DocumentView wrap(VPackSlice slice) {
+        if (!slice.isObject()) {
+            throw new IllegalArgumentException("Not a document: " + slice.getType());
+        }
+        this.slice = slice;
+        return this;
+    }
+
+    public String getKey() {
+        return getString("_key");
+    }
+
+    public String getId() {
+        return getString("_id");
+    }
+
+    public String getRevision() {
+        return getString("_rev");
+    }
+
+    public boolean has(String attribute) {
+        return !slice.get(attribute).isNone();
+    }
+
+    /**
+     * @return the velocypack of an attribute, not decoded
+     */
+    public VPackSlice get(String attribute) {
+        return slice.get(attribute);
+    }
+
+    /**
+     * @return the attribute as a String, or null if it is missing or null
+     */
+    public String getString(String attribute) {
+        VPackSlice value = slice.get(attribute);
+        return value.isNone() || value.isNull() ? null : value.getAsString();
+    }
+
+    /**
+     * @return the attribute as a long, or `defaultValue` if it is missing or
+     *         not a number
+     */
+    public long getLong(String attribute, long defaultValue) {
+        VPackSlice value = slice.get(attribute);
+        return value.isNumber() ? value.getAsLong() : defaultValue;
+    }
+
+    public double getDouble(String attribute, double defaultValue) {
+        VPackSlice value = slice.get(attribute);
+        return value.isNumber() ? value.getAsNumber().doubleValue() : defaultValue;
+    }
+
+    public boolean getBoolean(String attribute, boolean defaultValue) {
+        VPackSlice value = slice.get(attribute);
+        return value.isBoolean() ? value.getAsBoolean() : defaultValue;
+    }
+
+    /**
+     * @return the names of all attributes
+     */
+    public List<String> attributeNames() {
+        List<String> names = new ArrayList<>(slice.size());
+        for (Iterator<Map.Entry<String, VPackSlice>> it = slice.objectIterator(); it.hasNext();) {
+            names.add(it.next().getKey());
+        }
+        return names;
+    }
+
+    /**
+     * @return the velocypack of the whole document
+     */
+    public VPackSlice getSlice() {
+        return slice;
+    }
+
+    /**
+     * deserialize the whole document, e.g. into a record
+     */
+    public <T> T as(Class<T> type) {
+        return serialization.deserialize(slice, type);
+    }
+
+    public BaseDocument toBaseDocument() {
+        return as(BaseDocument.class);
+    }
+
+    /**
+     * @return an independent copy of this view, e.g. to keep the document
+     *         after the flyweight moved on
+     */
+    public DocumentView copy() {
+        return new DocumentView(serialization).wrap(new VPackSlice(slice.toByteArray()));
+    }
+
+    @Override
+    public String toString() {
+        return slice.toString();
+    }
+}
@@ -11,36 +11,42 @@ import com.arangodb.mapping.ArangoJack;
 import com.arangodb.model.CollectionCreateOptions;
 import com.arangodb.model.DocumentCreateOptions;
 import com.arangodb.model.StreamTransactionOptions;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Main {
-    // host name and port
-    private static String hostname = "coordinator1";
+    // host names of the coordinators and port
+    private static String[] hostnames = { "coordinator1", "coordinator2" };
     private static int port = 8529;
 
     // the name of the database used in this example
     private static String dbName = "aql_tutorial";
+    // number of elements of bulk data bound per query, Queries 14 and 15
+    private static int bulkChunkSize = 1000;
+    // the statistics of the driver calls, logged at the end
+    private static DriverMetrics metrics = DriverMetrics.shared();
     private static Logger logger = LoggerFactory.getLogger("           ");
     private static Logger beginLogger = LoggerFactory.getLogger(">>>BEGIN>>>");
     private static Logger endLogger = LoggerFactory.getLogger("<<<<END<<<<");
 
-    private static void cleanup() {
-        ArangoDB arangoDB = new ArangoDB.Builder()
-                .serializer(new ArangoJack())
-                .host(hostname, port)
-                .user("root")
-                .password("")
-                .build();
-        ArangoDatabase db = arangoDB.db(DbName.of(dbName));
+    private static void cleanup(ConnectionFactory connections) {
+        ArangoDatabase db = connections.db(dbName);
         if (db.exists()) {
             db.drop();
         }
-        arangoDB.shutdown();
     }
 
     // https://www.arangodb.com/docs/stable/graphs.html#the-social-graph
@@ -70,43 +76,43 @@ public class Main {
         GraphEntity socialGraph = db.graph("social").create(edgeDefinitions);
 
         // four vertices
-        VertexEntity a = db.graph("social").vertexCollection("female").insertVertex(Map.ofEntries(
+        VertexEntity a = metrics.insertVertex(db.graph("social").vertexCollection("female"), Map.ofEntries(
                 Map.entry("name", "Alice"),
                 Map.entry("_key", "alice")));
-        VertexEntity b = db.graph("social").vertexCollection("male").insertVertex(Map.ofEntries(
+        VertexEntity b = metrics.insertVertex(db.graph("social").vertexCollection("male"), Map.ofEntries(
                 Map.entry("name", "Bob"),
                 Map.entry("_key", "bob")));
-        VertexEntity c = db.graph("social").vertexCollection("male").insertVertex(Map.ofEntries(
+        VertexEntity c = metrics.insertVertex(db.graph("social").vertexCollection("male"), Map.ofEntries(
                 Map.entry("name", "Charly"),
                 Map.entry("_key", "charly")));
-        VertexEntity d = db.graph("social").vertexCollection("female").insertVertex(Map.ofEntries(
+        VertexEntity d = metrics.insertVertex(db.graph("social").vertexCollection("female"), Map.ofEntries(
                 Map.entry("name", "Diana"),
                 Map.entry("_key", "diana")));
 
         // four edges
-        db.graph("social").edgeCollection("relation").insertEdge(Map.ofEntries(
+        metrics.insertEdge(db.graph("social").edgeCollection("relation"), Map.ofEntries(
                 Map.entry("_from", a.getId()),
                 Map.entry("_to", b.getId()),
                 Map.entry("type", "married"),
                 Map.entry("vertex", a.getKey())));
-        db.graph("social").edgeCollection("relation").insertEdge(Map.ofEntries(
+        metrics.insertEdge(db.graph("social").edgeCollection("relation"), Map.ofEntries(
                 Map.entry("_from", a.getId()),
                 Map.entry("_to", c.getId()),
                 Map.entry("type", "friend"),
                 Map.entry("vertex", a.getKey())));
-        db.graph("social").edgeCollection("relation").insertEdge(Map.ofEntries(
+        metrics.insertEdge(db.graph("social").edgeCollection("relation"), Map.ofEntries(
                 Map.entry("_from", c.getId()),
                 Map.entry("_to", d.getId()),
                 Map.entry("type", "married"),
                 Map.entry("vertex", c.getKey())));
-        db.graph("social").edgeCollection("relation").insertEdge(Map.ofEntries(
+        metrics.insertEdge(db.graph("social").edgeCollection("relation"), Map.ofEntries(
                 Map.entry("_from", d.getId()),
                 Map.entry("_to", b.getId()),
                 Map.entry("type", "friend"),
                 Map.entry("vertex", d.getKey())));
 
         // add a new edge to form a cycle a -> c -> d -> a
-        db.graph("social").edgeCollection("relation").insertEdge(Map.ofEntries(
+        metrics.insertEdge(db.graph("social").edgeCollection("relation"), Map.ofEntries(
                 Map.entry("_from", d.getId()),
                 Map.entry("_to", a.getId()),
                 Map.entry("type", "friend"),
@@ -117,7 +123,9 @@ public class Main {
         return socialGraph;
     }
 
-    private static List<BaseDocument> filterByName(ArangoDatabase db, String collectionName, String name) {
+    // the results are served by the cache until a write through the cache
+    // touches the collection
+    private static List<BaseDocument> filterByName(AqlResultCache cache, String collectionName, String name) {
         String query = """
                     FOR doc IN @@collection
                         FILTER doc.name == @name
@@ -126,29 +134,51 @@ public class Main {
         Map<String, Object> bindVars = Map.ofEntries(
                 Map.entry("@collection", collectionName), // for collection
                 Map.entry("name", name));
-        ArangoCursor<BaseDocument> cursor = db.query(query, bindVars, BaseDocument.class);
         beginLogger.info("AQL Read: from collection \"{}\" of name \"{}\"",
                 collectionName, name);
-        List<BaseDocument> docList = cursor.asListRemaining();
+        List<BaseDocument> docList = cache.query("filterByName", query, bindVars, BaseDocument.class);
         return docList;
     }
 
     public static void main(String[] args) {
-        cleanup();
-
-        // Connection
-        ArangoDB arangoDB = new ArangoDB.Builder()
-                .serializer(new ArangoJack())
-                .host(hostname, port)
+        // "profile" profiles every query and writes the profiles to
+        // `aql-profile.json`; given a baseline report as second argument,
+        // the run fails if a query regressed against it
+        boolean profile = args.length > 0 && args[0].equals("profile");
+
+        // Connections to all coordinators, shared by the whole process;
+        // the batch of Queries 1-3 runs up to 3 statements at a time
+        ConnectionFactory.Builder builder = new ConnectionFactory.Builder()
                 .user("root")
                 .password("")
-                .build();
+                .protocol(Protocol.VST)
+                .serializer(new MeteredSerialization(new ArangoJack()))
+                .maxConnections(3)
+                .acquireTimeout(5_000);
+        for (String hostname : hostnames) {
+            builder.host(hostname, port);
+        }
+        ConnectionFactory connections = ConnectionFactory.shared(builder);
+        connections.warmUp();
+        // publish the driver metrics on the global registry of Micrometer,
+        // to which e.g. a JmxMeterRegistry can be added
+        metrics.bindTo(Metrics.globalRegistry);
+        cleanup(connections);
         // Creating a database
-        ArangoDatabase db = Utils.createDatabase(arangoDB, dbName);
+        // the queries below run one after another, partly in a stream transaction,
+        // so they all stay on the coordinator picked here, except for the batch of
+        // Queries 1-3, which is spread over the coordinators
+        ArangoDatabase db = Utils.createDatabase(connections.arango(), dbName);
         // create a social graph with
         // two vertex collections - male, female (name)
         // and one edge collection - relation (type, vertex) [vertex is out vertex]
         createSocialGraph(db);
+        // the queries run through the profiler, which only records their
+        // profiles when profiling is enabled
+        AqlProfiler profiler = new AqlProfiler(db, profile);
+        // an opt-in client-side cache of read results, at most 100 results for 60s;
+        // the writes of Queries 9-13 go through it to invalidate the results
+        AqlResultCache cache = new AqlResultCache(profiler, 100, 60_000);
 
         // AQL Queries 1-3: INSERT
         // insert: vertex, return and edge
@@ -160,14 +190,6 @@ public class Main {
                             INTO male
                     """;
 
-            beginLogger.info("Executing AQL Query 1: insert a vertex...");
-            try {
-                db.query(query1, null);
-                endLogger.info("Query 1 Success.");
-            } catch (Exception e) {
-                endLogger.error("Query 1 Failure: " + e.getMessage());
-            }
-
             // return the inserted document
             // https://www.arangodb.com/docs/stable/aql/operations-insert.html#returning-the-inserted-documents
             String query2 = """
@@ -176,15 +198,6 @@ public class Main {
                             RETURN NEW
                     """;
 
-            beginLogger.info("Executing AQL Query 2: return the inserted document...");
-            try {
-                ArangoCursor<BaseDocument> cursor = db.query(query2, BaseDocument.class);
-                cursor.forEach(aDocument -> logger.info("Key: " + aDocument.getAttribute("name")));
-                endLogger.info("Query 2 Success.");
-            } catch (Exception e) {
-                endLogger.error("Query 2 Failure: " + e.getMessage());
-            }
-
             // insert an edge
             // when inserting into an edge collection,
             // it is mandatory to specify the attributes _from and _to in document
@@ -205,15 +218,30 @@ public class Main {
                             RETURN r._key
                     """;
 
-            beginLogger.info("Executing AQL Query 3: insert an edge...");
-            try {
-                ArangoCursor<String> cursor = db.query(query3, String.class);
-                cursor.forEach(key -> logger.info("Key: " + key));
-                endLogger.info("Query 3 Success.");
-            } catch (Exception e) {
-                endLogger.error("Query 3 Failure: " + e.getMessage());
+            // Queries 1 and 2 write different collections and run concurrently,
+            // Query 3 reads "female", so it waits for Query 2
+            beginLogger.info("Executing AQL Queries 1-3: insert a vertex, return the inserted document " +
+                    "and insert an edge, as a batch...");
+            AqlBatchExecutor batch = new AqlBatchExecutor(connections, profiler, dbName, 3);
+            List<CompletableFuture<? extends List<?>>> results = batch.execute(List.of(
+                    new AqlBatchExecutor.Statement<>("Query 1", query1, Void.class)
+                            .writes("male"),
+                    new AqlBatchExecutor.Statement<>("Query 2", query2, BaseDocument.class)
+                            .writes("female"),
+                    new AqlBatchExecutor.Statement<>("Query 3", query3, String.class)
+                            .reads("female").writes("relation")));
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get().forEach(result -> logger.info(result.toString()));
+                    endLogger.info("Query {} Success.", i + 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    endLogger.error("Query {} Failure: interrupted", i + 1);
+                } catch (ExecutionException e) {
+                    endLogger.error("Query {} Failure: {}", i + 1, e.getCause().getMessage());
+                }
             }
-
+            batch.shutdown();
         }
 
         // AQL Queries 4-5: DOCUMENT
@@ -238,8 +266,8 @@ public class Main {
 
             beginLogger.info("Executing AQL Query 4: read the document(s) of name \"Alice\"...");
             try {
-                ArangoCursor<BaseDocument> cursor = db.query(query4, BaseDocument.class);
-                cursor.forEach(aDocument -> logger.info("Key: " + aDocument.getKey()));
+                List<BaseDocument> docList = cache.query("Query 4", query4, null, BaseDocument.class);
+                docList.forEach(aDocument -> logger.info("Key: " + aDocument.getKey()));
                 endLogger.info("Query 4 Success.");
             } catch (Exception e) {
                 endLogger.error("Query 4 Failure: " + e.getMessage());
@@ -286,8 +314,16 @@ public class Main {
                     "document(s) of name \"Alice\"...");
             try {
                 // use the implemented `queryDocumentArray` to read such query results
-                List<BaseDocument> docArray = Utils.queryDocumentArray(db, query5);
+                List<BaseDocument> docArray = Utils.queryDocumentArray(profiler, "Query 5", query5);
                 docArray.forEach(doc -> logger.info(doc.toString()));
+                // or stream them, decoding one document at a time,
+                // with 100 results per batch kept by a streaming cursor for at most 30s
+                try (Stream<BaseDocument> docStream = Utils.streamDocumentArray(db, query5, null, 100, true, 30)) {
+                    docStream.forEach(doc -> logger.info(doc.toString()));
+                }
+                // or read them in place, as views decoding only the attributes read
+                Utils.forEachDocument(db, query5, null, null,
+                        view -> logger.info("Key: {}, name: {}", view.getKey(), view.getString("name")));
                 endLogger.info("Query 5 Success.");
             } catch (Exception e) {
                 endLogger.error("Query 5 Failure: " + e.getMessage());
@@ -307,8 +343,8 @@ public class Main {
             beginLogger.info("Executing AQL Query 6: insert five docs with " +
                     "incrementing keys and a common name \"Someone\"");
             try {
-                ArangoCursor<BaseDocument> cursor = db.query(query6, BaseDocument.class);
-                double runtime = (long) (cursor.getStats().getExecutionTime() * 1e9) / 1e6;
+                double executionTime = profiler.run("Query 6", query6, null, BaseDocument.class).executionTime();
+                double runtime = (long) (executionTime * 1e9) / 1e6;
                 endLogger.info("Query 6 Success. Runtime: {} ms", runtime);
             } catch (Exception e) {
                 endLogger.error("Query 6 Failure: " + e.getMessage());
@@ -322,19 +358,19 @@ public class Main {
                 baseDoc.addAttribute("name", "Someone");
                 baseDocArray.add(baseDoc);
             }
-            StreamTransactionEntity tx = db
-                    .beginStreamTransaction(new StreamTransactionOptions().writeCollections("male"));
+            StreamTransactionEntity tx = metrics.beginStreamTransaction(db,
+                    new StreamTransactionOptions().writeCollections("male"));
             DocumentCreateOptions options = new DocumentCreateOptions().streamTransactionId(tx.getId());
             try {
                 long start = System.nanoTime();
-                db.collection("male").insertDocuments(baseDocArray, options);
+                metrics.insertDocuments(db.collection("male"), baseDocArray, options);
                 long end = System.nanoTime();
-                db.commitStreamTransaction(tx.getId());
+                metrics.commitStreamTransaction(db, tx.getId());
                 double runtime = (double) (end - start) / 1e6;
                 // the timing doesn't count in the begin and end of the transaction
                 endLogger.info("Batch Insert by Java Driver Success. Runtime: {} ms", runtime);
             } catch (Exception e) {
-                db.abortStreamTransaction(tx.getId());
+                metrics.abortStreamTransaction(db, tx.getId());
                 endLogger.error("Batch Insert by Java Driver Failure: " + e.getMessage());
             }
         }
@@ -356,7 +392,8 @@ public class Main {
             beginLogger.info("Executing AQL Query 7: read the document(s) of name \"Someone\"...");
             try {
                 logger.info("Output with ArangoCursor/ArangoIterator: Key, line by line");
-                ArangoCursor<BaseDocument> cursor = db.query(query7, BaseDocument.class);
+                ArangoCursor<BaseDocument> cursor = DriverMetrics.shared().cursor(db, "Query 7", query7, null, null,
+                        BaseDocument.class);
                 // converts to ArangoIterator, which extends java.util.Iterator
                 Iterator<BaseDocument> iter = cursor.iterator();
                 cursor.forEach(aDocument -> logger.info("Key: " + aDocument.getKey()));
@@ -364,10 +401,8 @@ public class Main {
                 iter.forEachRemaining(doc -> logger.info("Keys: " + doc.getKey()));
 
                 logger.info("Output with List: Keys, one line");
-                // renew cursor
-                cursor = db.query(query7, BaseDocument.class);
-                // convert ArangoCursor to List
-                List<BaseDocument> docList = cursor.asListRemaining();
+                // renew cursor, and convert ArangoCursor to List
+                List<BaseDocument> docList = profiler.query("Query 7", query7, null, BaseDocument.class);
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("Query 7 Success.");
@@ -389,8 +424,7 @@ public class Main {
             beginLogger.info("Executing AQL Query 8: sort and limit " +
                     "the document(s) of name \"Someone\"...");
             try {
-                ArangoCursor<BaseDocument> cursor = db.query(query8, BaseDocument.class);
-                List<BaseDocument> docList = cursor.asListRemaining();
+                List<BaseDocument> docList = cache.query("Query 8", query8, null, BaseDocument.class);
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("Query 8 Success.");
@@ -415,9 +449,9 @@ public class Main {
             beginLogger.info("Executing AQL Query 9: update the doc with key \"someone1\"...");
             try {
                 @SuppressWarnings("unchecked")
-                ArangoCursor<Map<String, Object>> cursor = db.query(query9,
+                List<Map<String, Object>> results = cache.write("Query 9", query9, null,
                         (Class<Map<String, Object>>) ((Class<?>) Map.class));
-                cursor.forEach(map -> logger.info("old: {}, new: {}",
+                results.forEach(map -> logger.info("old: {}, new: {}",
                         map.get("old").toString(),
                         map.get("new").toString()));
                 endLogger.info("Query 9 Success.");
@@ -440,9 +474,7 @@ public class Main {
 
             beginLogger.info("Executing AQL Query 10: update remaining docs of name \"Someone\"...");
             try {
-                ArangoCursor<BaseDocument> cursor = db.query(query10, BaseDocument.class);
-                // convert ArangoCursor to List
-                List<BaseDocument> docList = cursor.asListRemaining();
+                List<BaseDocument> docList = cache.write("Query 10", query10, null, BaseDocument.class);
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("Query 10 Success.");
@@ -453,7 +485,7 @@ public class Main {
             // read "NotSomeone"
             // only one doc was updated
             try {
-                List<BaseDocument> docList = filterByName(db, "male", "NotSomeone");
+                List<BaseDocument> docList = filterByName(cache, "male", "NotSomeone");
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("AQL Read Success.");
@@ -471,7 +503,7 @@ public class Main {
 
             beginLogger.info("Executing AQL Query 11: update remaining docs of name \"Someone\"...");
             try {
-                db.query(query11, null);
+                cache.write("Query 11", query11, null, Void.class);
                 endLogger.info("Query 11 Success.");
             } catch (Exception e) {
                 endLogger.error("Query 11 Failure: " + e.getMessage());
@@ -479,7 +511,7 @@ public class Main {
 
             // then READ, ok
             try {
-                List<BaseDocument> docList = filterByName(db, "male", "NotSomeone");
+                List<BaseDocument> docList = filterByName(cache, "male", "NotSomeone");
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("AQL Read Success.");
@@ -501,7 +533,7 @@ public class Main {
 
             beginLogger.info("Executing AQL Query 12: update docs of name \"NotSomeone\"...");
             try {
-                db.query(query12, null);
+                cache.write("Query 12", query12, null, Void.class);
                 endLogger.info("Query 12 Success.");
             } catch (Exception e) {
                 endLogger.error("Query 12 Failure: " + e.getMessage());
@@ -509,7 +541,7 @@ public class Main {
 
             // read NotSomeone, no docs
             try {
-                List<BaseDocument> docList = filterByName(db, "male", "NotSomeone");
+                List<BaseDocument> docList = filterByName(cache, "male", "NotSomeone");
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("AQL Read Success.");
@@ -519,7 +551,7 @@ public class Main {
 
             // read Someone, the docs updated
             try {
-                List<BaseDocument> docList = filterByName(db, "male", "Someone");
+                List<BaseDocument> docList = filterByName(cache, "male", "Someone");
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("AQL Read Success.");
@@ -528,6 +560,25 @@ public class Main {
             }
         }
 
+        // Bulk partial update by Java Driver, instead of an AQL UPDATE loop:
+        // the docs of name "Someone" get a new attribute, in batches of 100,
+        // and a write-write conflict is retried per document
+        {
+            beginLogger.info("Executing Bulk Update by Java Driver: tag the docs of name \"Someone\"...");
+            try {
+                List<BaseDocument> docList = filterByName(cache, "male", "Someone");
+                BulkUpdater updater = new BulkUpdater(connections, dbName, "male", 100, 2, 3);
+                BulkUpdater.UpdateStats stats = updater.update(docList.stream()
+                        .map(doc -> Map.entry(doc.getKey(), Map.<String, Object>of("tag", "bulk"))));
+                // the update bypassed the cache
+                cache.invalidate(List.of("male"));
+                endLogger.info("Bulk Update by Java Driver Success. {} docs updated, {} conflicts",
+                        stats.updated(), stats.conflicts());
+            } catch (Exception e) {
+                endLogger.error("Bulk Update by Java Driver Failure: " + e.getMessage());
+            }
+        }
+
         // AQL Query 13: REMOVE
         {
             String query13 = """
@@ -538,7 +589,7 @@ public class Main {
 
             beginLogger.info("Executing AQL Query 13: remove docs of name \"Someone\"...");
             try {
-                db.query(query13, null);
+                cache.write("Query 13", query13, null, Void.class);
                 endLogger.info("Query 13 Success.");
             } catch (Exception e) {
                 endLogger.error("Query 13 Failure: " + e.getMessage());
@@ -546,7 +597,7 @@ public class Main {
 
             // read Someone, all docs of name "Someone" removed
             try {
-                List<BaseDocument> docList = filterByName(db, "male", "Someone");
+                List<BaseDocument> docList = filterByName(cache, "male", "Someone");
                 logger.info("Keys: {}",
                         docList.stream().map(doc -> doc.getKey()).collect(Collectors.toList()).toString());
                 endLogger.info("AQL Read Success.");
@@ -588,27 +639,33 @@ public class Main {
                         ]
                     """;
 
+            // the users are bound to the parameter @users instead of being
+            // concatenated into the query text, so the text stays the same for any users
+            List<?> users = Collections.emptyList();
+            try {
+                users = new ObjectMapper().readValue(userArray, List.class);
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to parse the users: " + e.getMessage());
+            }
+
             // array expansion
 
             // friends=null
-            // String query14 = "LET users =".concat(userArray).concat(
-            // """
-            // FOR u IN users
+            // String query14 = """
+            // FOR u IN @users
             // RETURN { name: u.name, friends: u.friends.name }
-            // """
-            // );
+            // """;
 
             // friends is the array of "u.friends.name"
-            String query14 = "LET users =".concat(userArray).concat(
-                    """
-                                FOR u IN users
-                                    RETURN { name: u.name, friends: u.friends[*].name }
-                            """);
+            String query14 = """
+                        FOR u IN @users
+                            RETURN { name: u.name, friends: u.friends[*].name }
+                    """;
 
             beginLogger.info("Executing AQL Query 14: array expansion...");
             try {
-                ArangoCursor<BaseDocument> cursor = db.query(query14, BaseDocument.class);
-                List<BaseDocument> docList = cursor.asListRemaining();
+                List<BaseDocument> docList = Utils.queryBulkData(profiler, "Query 14", query14, "users", users,
+                        bulkChunkSize, BaseDocument.class).collect(Collectors.toList());
                 logger.info(docList.toString());
                 endLogger.info("Query 14 Success.");
             } catch (Exception e) {
@@ -616,17 +673,16 @@ public class Main {
             }
 
             // merge
-            String query15 = "LET users =".concat(userArray).concat(
-                    """
-                                FOR u IN users
-                                    RETURN MERGE({ name: u.name, friends: u.friends[*].name },
-                                        { age: u.age })
-                            """);
+            String query15 = """
+                        FOR u IN @users
+                            RETURN MERGE({ name: u.name, friends: u.friends[*].name },
+                                { age: u.age })
+                    """;
 
             beginLogger.info("Executing AQL Query 15: merge two sub-docs...");
             try {
-                ArangoCursor<BaseDocument> cursor = db.query(query15, BaseDocument.class);
-                List<BaseDocument> docList = cursor.asListRemaining();
+                List<BaseDocument> docList = Utils.queryBulkData(profiler, "Query 15", query15, "users", users,
+                        bulkChunkSize, BaseDocument.class).collect(Collectors.toList());
                 logger.info(docList.toString());
                 endLogger.info("Query 15 Success.");
             } catch (Exception e) {
@@ -646,8 +702,8 @@ public class Main {
                 // Suppress the warning here
                 // Type safety: Unchecked cast from Class to Class<List<Integer>>
                 @SuppressWarnings("unchecked")
-                ArangoCursor<List<Integer>> cursor = db.query(query16, (Class<List<Integer>>) ((Class<?>) List.class));
-                List<List<Integer>> docList = cursor.asListRemaining();
+                List<List<Integer>> docList = profiler.query("Query 16", query16, null,
+                        (Class<List<Integer>>) ((Class<?>) List.class));
                 logger.info(docList.toString());
                 endLogger.info("Query 16 Success.");
             } catch (Exception e) {
@@ -669,14 +725,26 @@ public class Main {
                     """;
             beginLogger.info("Executing AQL Query 17: graph traversal...");
             try {
-                ArangoCursor<String> cursor = db.query(query17, String.class);
-                List<String> path = cursor.asListRemaining();
+                // the edges of the graph are not named in the query
+                List<String> path = cache.query("Query 17", query17, null, String.class, "relation");
                 logger.info(path.toString());
                 endLogger.info("Query 17 Success.");
             } catch (Exception e) {
                 endLogger.error("Query 17 Failure: " + e.getMessage());
             }
 
+            // the same traversal on a local projection of the graph,
+            // which costs no round trip once the graph is loaded
+            beginLogger.info("Projecting graph social, and traversing it locally...");
+            try {
+                CsrGraph social = CsrGraph.load(db, "social", "name");
+                List<String> path = social.paths("female/alice", 2, 5);
+                logger.info(path.toString());
+                endLogger.info("Local traversal Success.");
+            } catch (Exception e) {
+                endLogger.error("Local traversal Failure: " + e.getMessage());
+            }
+
             // detect cycles starting from Alice
             String query18 = """
                         WITH male, female
@@ -691,8 +759,7 @@ public class Main {
             try {
                 // start from Alice
                 Map<String, Object> bindVars = Collections.singletonMap("start", "female/alice");
-                ArangoCursor<String> cursor = db.query(query18, bindVars, String.class);
-                List<String> path = cursor.asListRemaining();
+                List<String> path = profiler.query("Query 18", query18, bindVars, String.class);
                 logger.info(path.toString());
                 endLogger.info("Query 18 Success.");
             } catch (Exception e) {
@@ -711,8 +778,7 @@ public class Main {
                     """;
             beginLogger.info("Executing AQL Query 19: cycle detection, starting from all edges...");
             try {
-                ArangoCursor<String> cursor = db.query(query19, String.class);
-                List<String> path = cursor.asListRemaining();
+                List<String> path = profiler.query("Query 19", query19, null, String.class);
                 logger.info(path.toString());
                 endLogger.info("Query 19 Success.");
             } catch (Exception e) {
@@ -739,15 +805,48 @@ public class Main {
                     """;
             beginLogger.info("Executing AQL Query 20: cycle detection, starting from all male vertices...");
             try {
-                ArangoCursor<String> cursor = db.query(query20, String.class);
-                List<String> path = cursor.asListRemaining();
+                List<String> path = profiler.query("Query 20", query20, null, String.class);
                 logger.info(path.toString());
                 endLogger.info("Query 20 Success.");
             } catch (Exception e) {
                 endLogger.error("Query 20 Failure: " + e.getMessage());
             }
+
+            // the cycles of Queries 19 and 20 on a local projection of the graph,
+            // each cycle reported once instead of once per vertex on it
+            beginLogger.info("Detecting cycles locally, in all vertices and in male vertices...");
+            try {
+                CsrGraph social = CsrGraph.load(db, "social", "name");
+                CycleFinder all = new CycleFinder(social, 2, 5);
+                logger.info(all.find().stream().map(all::format).collect(Collectors.toList()).toString());
+                CycleFinder male = new CycleFinder(social, 2, 5, "male");
+                logger.info(male.find().stream().map(male::format).collect(Collectors.toList()).toString());
+                endLogger.info("Local cycle detection Success.");
+            } catch (Exception e) {
+                endLogger.error("Local cycle detection Failure: " + e.getMessage());
+            }
         }
 
-        arangoDB.shutdown();
+        logger.info(cache.toString());
+        metrics.report();
+        if (profile) {
+            try {
+                profiler.writeReport(Path.of("aql-profile.json"));
+                if (args.length > 1) {
+                    List<String> regressions = profiler.compare(Path.of(args[1]));
+                    if (!regressions.isEmpty()) {
+                        regressions.forEach(regression -> logger.error("Regression: " + regression));
+                        connections.shutdown();
+                        // here we force exit the program to fail the run
+                        System.exit(-1);
+                    }
+                    logger.info("No regressions against " + args[1]);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to write or compare the profiles: " + e.getMessage());
+            }
+        }
+        metrics.unbind(Metrics.globalRegistry);
+        connections.shutdown();
     }
 }
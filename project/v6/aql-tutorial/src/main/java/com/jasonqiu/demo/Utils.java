@@ -2,9 +2,18 @@ package com.jasonqiu.demo;
 
 import com.arangodb.*;
 import com.arangodb.entity.BaseDocument;
+import com.arangodb.internal.util.ArangoSerializationFactory.Serializer;
+import com.arangodb.model.AqlQueryOptions;
 import com.arangodb.model.CollectionCreateOptions;
+import com.arangodb.velocypack.VPackSlice;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,21 +76,22 @@ public class Utils {
     /**
      * Convert the query result of a document array
      * to a List<BaseDocuement> in java
-     * @param db
+     * @param profiler runs the query
+     * @param name     the name of the query for the profiler
      * @param query
      * @return
      */
-    public static List<BaseDocument> queryDocumentArray(ArangoDatabase db, String query) {
+    public static List<BaseDocument> queryDocumentArray(AqlProfiler profiler, String name, String query) {
         
         // https://stackoverflow.com/questions/2012306/how-to-create-a-class-literal-of-a-known-type-classliststring
         // Suppress the warning here 
         // Type safety: Unchecked cast from Class to Class<List<Map<String, Object>>>
         @SuppressWarnings("unchecked")
-        ArangoCursor<List<Map<String, Object>>> cursor = db.query(query,
+        List<List<Map<String, Object>>> results = profiler.query(name, query, null,
             (Class<List<Map<String, Object>>>) ((Class<?>) List.class));
         // ArangoCursor<List> cursor = db.query(query5, List.class);
         List<BaseDocument> docList = new ArrayList<>();
-        for (List<Map<String, Object>> mapList : cursor) {
+        for (List<Map<String, Object>> mapList : results) {
             for (Map<String, Object> map : mapList) {
                 BaseDocument doc = new BaseDocument();
                 doc.setId(map.remove("_id").toString());
@@ -93,4 +103,109 @@ public class Utils {
         }
         return docList;
     }
+
+    /**
+     * Lazy variant of `queryDocumentArray`: the documents are decoded one at a
+     * time while the stream is consumed, and the cursor fetches the next batch
+     * only when the current one is used up, so the client holds at most one
+     * batch of raw velocypack instead of every document twice.
+     * 
+     * Each result of the query is either a document, or an array of documents
+     * as in Query 5, which is flattened. The stream must be closed, e.g. by
+     * try-with-resources, to release the cursor on the server.
+     * 
+     * @param db        ArangoDatabase
+     * @param query     the AQL query
+     * @param bindVars  bind parameters, or null
+     * @param batchSize number of results per batch fetched from the server
+     * @param stream    whether the server computes the results lazily as well
+     * @param ttl       seconds the server keeps the cursor between two batches
+     * @return a stream of documents
+     */
+    public static Stream<BaseDocument> streamDocumentArray(ArangoDatabase db, String query,
+            Map<String, Object> bindVars, int batchSize, boolean stream, int ttl) {
+        return streamDocumentArray(db, query, bindVars,
+                new AqlQueryOptions().batchSize(batchSize).stream(stream).ttl(ttl));
+    }
+
+    public static Stream<BaseDocument> streamDocumentArray(ArangoDatabase db, String query,
+            Map<String, Object> bindVars, AqlQueryOptions options) {
+        // keep the results as raw velocypack, they are decoded one by one below;
+        // only the query and its first batch are timed, not the later batches
+        ArangoCursor<VPackSlice> cursor = DriverMetrics.shared().cursor(db, "streamDocumentArray", query, bindVars,
+                options, VPackSlice.class);
+        return documents(cursor)
+                .map(slice -> (BaseDocument) db.util(Serializer.CUSTOM).deserialize(slice, BaseDocument.class))
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Zero-copy variant of `streamDocumentArray`: every document is passed to
+     * the action as a DocumentView on the velocypack of the response, which
+     * decodes an attribute only when it is read. The same view is reused for
+     * all documents, so it must not be kept beyond the call of the action,
+     * unless copied or materialized by `DocumentView.as`.
+     * 
+     * @param db       ArangoDatabase
+     * @param query    the AQL query
+     * @param bindVars bind parameters, or null
+     * @param options  AqlQueryOptions, e.g. with a batch size, or null
+     * @param action   called for every document
+     */
+    public static void forEachDocument(ArangoDatabase db, String query, Map<String, Object> bindVars,
+            AqlQueryOptions options, Consumer<DocumentView> action) {
+        DocumentView view = new DocumentView(db.util(Serializer.CUSTOM));
+        // timed with all batches, and the actions in between
+        DriverMetrics.shared().record("query", "forEachDocument", 0, () -> {
+            try (ArangoCursor<VPackSlice> cursor = db.query(query, bindVars, options, VPackSlice.class)) {
+                documents(cursor).forEach(slice -> action.accept(view.wrap(slice)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    // the results of a cursor, with arrays of documents flattened
+    private static Stream<VPackSlice> documents(ArangoCursor<VPackSlice> cursor) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                .flatMap(slice -> slice.isArray()
+                        ? StreamSupport.stream(Spliterators.spliteratorUnknownSize(slice.arrayIterator(),
+                                Spliterator.ORDERED), false)
+                        : Stream.of(slice));
+    }
+
+    /**
+     * Run a query over bulk data passed as a bind parameter, instead of
+     * concatenating the data into the query text: the query text stays the
+     * same for any data, so the server can reuse its plan, and the request
+     * grows with the data only, without escaping it into AQL.
+     * 
+     * The data is sent in chunks of `chunkSize` elements, one query per chunk,
+     * run lazily while the stream is consumed; so the query must handle every
+     * element on its own, e.g. `FOR u IN @users RETURN ...`, without
+     * aggregating over all elements.
+     * 
+     * @param profiler  runs the queries
+     * @param name      the name of the query for the profiler
+     * @param query     the AQL query, with the bind parameter `@<parameter>`
+     * @param parameter name of the bind parameter, e.g. "users"
+     * @param data      the bulk data
+     * @param chunkSize number of elements bound per query
+     * @param type      the type of the results
+     * @return the results of all chunks, in order
+     */
+    public static <T> Stream<T> queryBulkData(AqlProfiler profiler, String name, String query, String parameter,
+            List<?> data, int chunkSize, Class<T> type) {
+        int chunks = (data.size() + chunkSize - 1) / chunkSize;
+        return IntStream.range(0, chunks)
+                .mapToObj(i -> data.subList(i * chunkSize, Math.min(data.size(), (i + 1) * chunkSize)))
+                .flatMap(chunk -> profiler.query(name, query, Map.of(parameter, chunk), type).stream());
+    }
 }
@@ -0,0 +1,41 @@
+package com.jasonqiu.demo;
+
+import java.util.*;
+
+/**
+ * regression check of CycleFinder on a graph with parallel edges, without a
+ * database; run after `mvn test-compile` with
+ * `java -cp target/classes:target/test-classes:<dependencies> com.jasonqiu.demo.CycleFinderCheck`
+ */
+public class CycleFinderCheck {
+
+    public static void main(String[] args) {
+        // 0->1 twice: the second edge was followed again once a deeper frame
+        // had also reached 1, so v/0->v/1->v/0 was reported twice
+        CsrGraph graph = CsrGraph.of(
+                new String[] { "v/0", "v/1" },
+                new String[] { "v/0", "v/1" },
+                new String[] { "v/1", "v/2" },
+                new String[] { "v/2", "v/1" },
+                new String[] { "v/1", "v/0" });
+        CycleFinder finder = new CycleFinder(graph, 2, 5);
+        List<String> cycles = new ArrayList<>();
+        finder.find().forEach(cycle -> cycles.add(finder.format(cycle)));
+        Collections.sort(cycles);
+        check(cycles.equals(List.of("v/0->v/1->v/0", "v/1->v/2->v/1")), "cycles " + cycles);
+
+        try {
+            new CycleFinder(graph, 3, 2);
+            check(false, "no exception for the lengths 3..2");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        System.out.println("CycleFinder: all checks passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
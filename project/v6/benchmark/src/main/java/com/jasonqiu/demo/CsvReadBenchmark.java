@@ -0,0 +1,54 @@
+package com.jasonqiu.demo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * parse a whole csv file, with `Utils.readCsvToJsonArray` (Jackson) and with
+ * the memory-mapped `LdbcCsvParser`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvReadBenchmark {
+
+    @Param({ "../graph-data-import/resource/person.csv", "../graph-data-import/resource/person_knows_person.csv" })
+    public String file;
+
+    @Benchmark
+    public List<Map<String, String>> jacksonReadAll() {
+        return Utils.readCsvToJsonArray(file, '|');
+    }
+
+    // only slices the rows into fields
+    @Benchmark
+    public long memoryMapped() throws IOException {
+        long rows = 0;
+        try (LdbcCsvParser parser = new LdbcCsvParser(Path.of(file), '|')) {
+            while (parser.next()) {
+                rows += parser.fieldCount();
+            }
+        }
+        return rows;
+    }
+
+    // creates a String for every field, as Jackson does
+    @Benchmark
+    public void memoryMappedStrings(Blackhole blackhole) throws IOException {
+        try (LdbcCsvParser parser = new LdbcCsvParser(Path.of(file), '|')) {
+            while (parser.next()) {
+                for (int i = 0; i < parser.fieldCount(); i++) {
+                    blackhole.consume(parser.getString(i));
+                }
+            }
+        }
+    }
+}
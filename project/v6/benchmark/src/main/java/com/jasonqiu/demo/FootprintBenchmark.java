@@ -0,0 +1,91 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.mapping.ArangoJack;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * compare the footprint of the rows as Map<String, String> (the default import)
+ * with the typed records Person and Knows, without a database:
+ * the retained heap per row on the client, and the bytes per row on the wire
+ * as velocypack (VST) and as JSON (HTTP)
+ *
+ * java -cp target/benchmarks.jar com.jasonqiu.demo.FootprintBenchmark
+ */
+public class FootprintBenchmark {
+
+    private static Logger logger = LoggerFactory.getLogger(FootprintBenchmark.class);
+
+    private static ArangoJack serializer = new ArangoJack();
+    private static ObjectMapper jsonMapper = new ObjectMapper();
+
+    private static final String PERSON = "../graph-data-import/resource/person.csv";
+    private static final String KNOWS = "../graph-data-import/resource/person_knows_person.csv";
+
+    @FunctionalInterface
+    private interface Loader {
+        List<?> load() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        measure("person as maps", () -> {
+            List<Map<String, String>> rows = Utils.readCsvToJsonArray(PERSON, '|');
+            rows.forEach(Utils::toVertex);
+            return rows;
+        });
+        measure("person as records", () -> readAll(PERSON, Person.class));
+        measure("knows as maps", () -> {
+            List<Map<String, String>> rows = Utils.readCsvToJsonArray(KNOWS, '|');
+            rows.forEach(edge -> Utils.toEdge(edge, "person"));
+            return rows;
+        });
+        measure("knows as records", () -> readAll(KNOWS, Knows.class));
+    }
+
+    private static <T> List<T> readAll(String filename, Class<T> type) throws Exception {
+        return Utils.readCsvToRecordIterator(filename, '|', type).readAll();
+    }
+
+    private static void measure(String name, Loader loader) throws Exception {
+        List<?> rows = loader.load();
+        long vpack = sum(rows, row -> (long) serializer.serialize(row).getByteSize());
+        long json = sum(rows, row -> {
+            try {
+                return (long) jsonMapper.writeValueAsBytes(row).length;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        int count = rows.size();
+
+        // the heap is only an estimate: the difference of the used heap after a full
+        // gc, with and without the rows
+        long retained = usedHeap();
+        rows = null;
+        long heap = retained - usedHeap();
+
+        logger.info(String.format("%-18s %6d rows %8.1f heap bytes/row %8.1f vpack bytes/row %8.1f json bytes/row",
+                name, count, (double) heap / count, (double) vpack / count, (double) json / count));
+    }
+
+    private static long sum(List<?> rows, Function<Object, Long> size) {
+        long total = 0;
+        for (Object row : rows) {
+            total += size.apply(row);
+        }
+        return total;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
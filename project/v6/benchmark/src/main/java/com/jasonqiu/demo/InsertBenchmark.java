@@ -0,0 +1,83 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.mapping.ArangoJack;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * insert one batch of vertices through the driver against a LocalCoordinator,
+ * with `insertDocuments` and with an AQL INSERT over a bind parameter (cf. Query
+ * 6 of the AQL tutorial); this measures the client and transport side only, as
+ * the stand-in does not store anything
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int batchSize;
+
+    private LocalCoordinator coordinator;
+    private ArangoDB arangoDB;
+    private ArangoDatabase db;
+    private List<Map<String, String>> batch;
+    private Map<String, Object> bindVars;
+
+    @Setup
+    public void setup() throws Exception {
+        List<Map<String, String>> persons = Utils.readCsvToJsonArray("../graph-data-import/resource/person.csv", '|');
+        batch = new ArrayList<>(batchSize);
+        StringBuilder created = new StringBuilder("[");
+        for (int i = 0; i < batchSize; i++) {
+            Map<String, String> node = new LinkedHashMap<>(persons.get(i % persons.size()));
+            node.put("id", Integer.toString(i));
+            batch.add(Utils.toVertex(node));
+            created.append(i == 0 ? "" : ",")
+                    .append("{\"_id\":\"person/").append(i).append("\",\"_key\":\"").append(i)
+                    .append("\",\"_rev\":\"_fGk2-8O---\"}");
+        }
+        created.append("]");
+        bindVars = Map.of("docs", batch);
+
+        coordinator = new LocalCoordinator();
+        coordinator.respond("/_db/bench/_api/document/person", 202, created.toString());
+        coordinator.respond("/_db/bench/_api/cursor", 201,
+                "{\"result\":[],\"hasMore\":false,\"cached\":false,\"extra\":{\"warnings\":[],"
+                        + "\"stats\":{\"writesExecuted\":" + batchSize + ",\"writesIgnored\":0,"
+                        + "\"scannedFull\":0,\"scannedIndex\":0,\"filtered\":0,\"executionTime\":0.001}},"
+                        + "\"error\":false,\"code\":201}");
+
+        arangoDB = new ArangoDB.Builder()
+                .serializer(new ArangoJack())
+                .useProtocol(Protocol.HTTP_JSON)
+                .host("127.0.0.1", coordinator.getPort())
+                .user("root")
+                .password("")
+                .build();
+        db = arangoDB.db(DbName.of("bench"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        arangoDB.shutdown();
+        coordinator.close();
+    }
+
+    @Benchmark
+    public Object insertDocuments() {
+        return db.collection("person").insertDocuments(batch);
+    }
+
+    @Benchmark
+    public Object aqlInsert() {
+        return db.query("FOR d IN @docs INSERT d INTO person", bindVars, null, Void.class);
+    }
+}
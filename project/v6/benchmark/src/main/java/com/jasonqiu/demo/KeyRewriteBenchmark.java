@@ -0,0 +1,50 @@
+package com.jasonqiu.demo;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * rename "id" to "_key" and "src.id"/"dst.id" to "_from"/"_to" for every row of
+ * a file; the rewrite works in place, so every row is copied first, and
+ * `copyOnly` is the baseline of the copy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyRewriteBenchmark {
+
+    private List<Map<String, String>> persons;
+    private List<Map<String, String>> knowsPersons;
+
+    @Setup
+    public void setup() {
+        persons = Utils.readCsvToJsonArray("../graph-data-import/resource/person.csv", '|');
+        knowsPersons = Utils.readCsvToJsonArray("../graph-data-import/resource/person_knows_person.csv", '|');
+    }
+
+    @Benchmark
+    public void copyOnly(Blackhole blackhole) {
+        for (Map<String, String> node : persons) {
+            blackhole.consume(new LinkedHashMap<>(node));
+        }
+        for (Map<String, String> edge : knowsPersons) {
+            blackhole.consume(new LinkedHashMap<>(edge));
+        }
+    }
+
+    @Benchmark
+    public void copyAndRewrite(Blackhole blackhole) {
+        for (Map<String, String> node : persons) {
+            blackhole.consume(Utils.toVertex(new LinkedHashMap<>(node)));
+        }
+        for (Map<String, String> edge : knowsPersons) {
+            blackhole.consume(Utils.toEdge(new LinkedHashMap<>(edge), "person"));
+        }
+    }
+}
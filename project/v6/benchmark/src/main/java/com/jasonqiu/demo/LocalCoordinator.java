@@ -0,0 +1,72 @@
+package com.jasonqiu.demo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * a local HTTP stand-in for a coordinator, so that the driver calls can be
+ * benchmarked offline: every request body is read and discarded, and a canned
+ * JSON response is returned for the longest registered path prefix
+ */
+public class LocalCoordinator implements Closeable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    public LocalCoordinator() throws IOException {
+        // without TCP_NODELAY every small response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @param pathPrefix e.g. "/_db/bench/_api/document/person"
+     * @param code       the HTTP status code
+     * @param json       the response body
+     */
+    public void respond(String pathPrefix, int code, String json) {
+        responses.put(pathPrefix, json.getBytes(StandardCharsets.UTF_8));
+        codes.put(pathPrefix, code);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        String path = exchange.getRequestURI().getPath();
+        String match = responses.keySet().stream()
+                .filter(path::startsWith)
+                .max(Comparator.comparingInt(String::length))
+                .orElse(null);
+        byte[] body = match == null
+                ? "{\"error\":true,\"code\":404,\"errorNum\":404,\"errorMessage\":\"unknown path\"}"
+                        .getBytes(StandardCharsets.UTF_8)
+                : responses.get(match);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(match == null ? 404 : codes.get(match), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
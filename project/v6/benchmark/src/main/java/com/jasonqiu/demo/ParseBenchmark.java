@@ -0,0 +1,104 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.mapping.ArangoJack;
+import com.arangodb.velocypack.VPackSlice;
+import com.fasterxml.jackson.databind.MappingIterator;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * compare the parse throughput and the garbage per row of the Jackson path
+ * (`Utils.readCsvToJsonIterator`) and the memory-mapped `LdbcCsvParser`,
+ * without a database
+ *
+ * java -cp target/benchmarks.jar com.jasonqiu.demo.ParseBenchmark ../graph-data-import/resource/person.csv 20
+ */
+public class ParseBenchmark {
+
+    private static Logger logger = LoggerFactory.getLogger(ParseBenchmark.class);
+
+    // allocation counter of the current thread, provided by HotSpot
+    private static com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    @FunctionalInterface
+    private interface Pass {
+        long run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filename = args.length > 0 ? args[0] : "../graph-data-import/resource/person.csv";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        ArangoJack serializer = new ArangoJack();
+
+        // parse only: every field is sliced, Jackson also creates a String per field
+        measure("jackson parse", iterations, () -> {
+            long rows = 0;
+            try (MappingIterator<Map<String, String>> it = Utils.readCsvToJsonIterator(filename, '|')) {
+                while (it.hasNext()) {
+                    it.next();
+                    rows++;
+                }
+            }
+            return rows;
+        });
+        measure("mmap parse", iterations, () -> {
+            long rows = 0;
+            try (LdbcCsvParser parser = new LdbcCsvParser(Path.of(filename), '|')) {
+                while (parser.next()) {
+                    rows++;
+                }
+            }
+            return rows;
+        });
+
+        // parse and serialize every row to velocypack, as in the import
+        measure("jackson parse + serialize", iterations, () -> {
+            long rows = 0;
+            try (MappingIterator<Map<String, String>> it = Utils.readCsvToJsonIterator(filename, '|')) {
+                while (it.hasNext()) {
+                    VPackSlice slice = serializer.serialize(it.next());
+                    rows += slice.isObject() ? 1 : 0;
+                }
+            }
+            return rows;
+        });
+        measure("mmap parse + serialize", iterations, () -> {
+            long rows = 0;
+            try (LdbcCsvParser parser = new LdbcCsvParser(Path.of(filename), '|')) {
+                String[] attributes = parser.getHeader().toArray(new String[0]);
+                while (parser.next()) {
+                    VPackSlice slice = parser.toVPack(attributes, null);
+                    rows += slice.isObject() ? 1 : 0;
+                }
+            }
+            return rows;
+        });
+    }
+
+    // the first half of the iterations is a warm-up
+    private static void measure(String name, int iterations, Pass pass) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long rows = 0;
+        long nanos = 0;
+        long bytes = 0;
+        int warmup = iterations / 2;
+        for (int i = 0; i < iterations; i++) {
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long count = pass.run();
+            if (i >= warmup) {
+                nanos += System.nanoTime() - start;
+                bytes += threads.getThreadAllocatedBytes(threadId) - allocated;
+                rows += count;
+            }
+        }
+        logger.info(String.format("%-26s %10.0f rows/s %10.1f bytes/row", name,
+                rows * 1e9 / nanos, (double) bytes / rows));
+    }
+}
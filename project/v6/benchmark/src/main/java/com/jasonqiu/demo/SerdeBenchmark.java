@@ -0,0 +1,103 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.entity.BaseDocument;
+import com.arangodb.mapping.ArangoJack;
+import com.arangodb.velocypack.VPackParser;
+import com.arangodb.velocypack.VPackSlice;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * serialize and deserialize every row of person.csv or
+ * person_knows_person.csv one document at a time with ArangoJack, as a Map,
+ * BaseDocument or JsonNode, to velocypack (VST, HTTP_VPACK) or JSON
+ * (HTTP_JSON)
+ *
+ * Driver 6 always serializes to velocypack and converts it with a VPackParser
+ * for HTTP_JSON, so the JSON cases include the conversion. The payload size of
+ * all documents is printed once per trial; the allocation rate is measured
+ * with `-prof gc`. The same cases for the 7.x default serde are in
+ * `v7/benchmark`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerdeBenchmark {
+
+    @Param({ "person", "knows" })
+    public String shape;
+
+    @Param({ "Map", "BaseDocument", "JsonNode" })
+    public String type;
+
+    @Param({ "vpack", "json" })
+    public String format;
+
+    private ArangoJack serializer;
+    private VPackParser parser;
+    private Class<?> documentClass;
+    private List<Object> documents;
+    private VPackSlice[] vpackPayloads;
+    private String[] jsonPayloads;
+
+    @Setup
+    public void setup() {
+        serializer = new ArangoJack();
+        parser = new VPackParser.Builder().build();
+        documentClass = switch (type) {
+            case "BaseDocument" -> BaseDocument.class;
+            case "JsonNode" -> JsonNode.class;
+            default -> Map.class;
+        };
+
+        List<Map<String, String>> rows;
+        if (shape.equals("person")) {
+            rows = Utils.readCsvToJsonArray("../graph-data-import/resource/person.csv", '|');
+            rows.forEach(Utils::toVertex);
+        } else {
+            rows = Utils.readCsvToJsonArray("../graph-data-import/resource/person_knows_person.csv", '|');
+            rows.forEach(edge -> Utils.toEdge(edge, "person"));
+        }
+
+        documents = new ArrayList<>(rows.size());
+        vpackPayloads = new VPackSlice[rows.size()];
+        jsonPayloads = new String[rows.size()];
+        long vpackBytes = 0;
+        long jsonBytes = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            VPackSlice row = serializer.serialize(rows.get(i));
+            documents.add(serializer.deserialize(row, documentClass));
+            vpackPayloads[i] = row;
+            jsonPayloads[i] = parser.toJson(row);
+            vpackBytes += row.getByteSize();
+            jsonBytes += jsonPayloads[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+        System.out.printf("%n%s: %d documents, payload %d bytes velocypack, %d bytes JSON%n", shape, rows.size(),
+                vpackBytes, jsonBytes);
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (Object document : documents) {
+            VPackSlice slice = serializer.serialize(document);
+            blackhole.consume(format.equals("json") ? parser.toJson(slice) : slice);
+        }
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole blackhole) {
+        for (int i = 0; i < vpackPayloads.length; i++) {
+            VPackSlice slice = format.equals("json") ? parser.fromJson(jsonPayloads[i]) : vpackPayloads[i];
+            blackhole.consume(serializer.deserialize(slice, documentClass));
+        }
+    }
+}
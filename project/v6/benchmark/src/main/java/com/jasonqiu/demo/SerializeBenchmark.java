@@ -0,0 +1,49 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.mapping.ArangoJack;
+import com.arangodb.util.ArangoSerializer;
+import com.arangodb.velocypack.VPackSlice;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * serialize all vertices of person.csv to one velocypack array with ArangoJack,
+ * as `insertDocuments` does, for the rows as maps and as Person records
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+    private ArangoJack serializer;
+    private ArangoSerializer.Options options;
+    private List<Map<String, String>> maps;
+    private List<Person> records;
+
+    @Setup
+    public void setup() throws Exception {
+        serializer = new ArangoJack();
+        // the options used by the driver for a batch of documents
+        options = new ArangoSerializer.Options().stringAsJson(true);
+        maps = Utils.readCsvToJsonArray("../graph-data-import/resource/person.csv", '|');
+        maps.forEach(Utils::toVertex);
+        records = Utils.readCsvToRecordIterator("../graph-data-import/resource/person.csv", '|', Person.class)
+                .readAll();
+    }
+
+    @Benchmark
+    public VPackSlice maps() {
+        return serializer.serialize(maps, options);
+    }
+
+    @Benchmark
+    public VPackSlice records() {
+        return serializer.serialize(records, options);
+    }
+}
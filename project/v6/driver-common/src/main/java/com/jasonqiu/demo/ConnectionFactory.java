@@ -0,0 +1,333 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.mapping.ArangoJack;
+import com.arangodb.util.ArangoSerialization;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * connections to all coordinators of the cluster, one pooled ArangoDB instance
+ * per coordinator, so that the load is spread over the coordinators instead of
+ * saturating one of them
+ *
+ * A coordinator is picked per call, either round-robin or the one with the
+ * fewest requests in flight. A unit of work which has to stay on one
+ * coordinator, e.g. a stream transaction, gets its ArangoDatabase once by
+ * `db(name)` and keeps using it.
+ *
+ * A process is meant to share one instance, see `shared`. Only calls through
+ * `execute` are balanced by their number in flight: they take one of the
+ * `maxConnections` permits of their coordinator, waiting at most
+ * `acquireTimeout`, and the waits and timeouts are counted, so `stats()` shows
+ * whether the pools are large enough for the load. Calls on the instances
+ * handed out by `arango()` and `db(name)` are not counted and not limited;
+ * the coordinators of those instances take turns.
+ */
+public class ConnectionFactory {
+
+    private static Logger logger = LoggerFactory.getLogger(ConnectionFactory.class);
+
+    // the instance shared by the process
+    private static ConnectionFactory shared;
+
+    // seconds between keep-alive messages on idle VelocyStream connections
+    private static final int KEEP_ALIVE_INTERVAL = 30;
+
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_IN_FLIGHT
+    }
+
+    private static class Coordinator {
+        private final String endpoint;
+        private final ArangoDB arangoDB;
+        private final Semaphore permits;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        private Coordinator(String endpoint, ArangoDB arangoDB, int maxConnections) {
+            this.endpoint = endpoint;
+            this.arangoDB = arangoDB;
+            this.permits = new Semaphore(maxConnections);
+        }
+    }
+
+    /**
+     * the saturation of the pool of one coordinator
+     *
+     * @param calls        calls through `execute`
+     * @param waits        calls which found no free connection and waited
+     * @param waitMillis   the total time spent waiting for a connection
+     * @param timeouts     calls which did not get a connection in time
+     * @param inFlight     calls in flight now
+     * @param peakInFlight the most calls in flight at a time
+     */
+    public record PoolStats(String endpoint, int maxConnections, long calls, long waits, double waitMillis,
+            long timeouts, int inFlight, int peakInFlight) {
+    }
+
+    private final List<Coordinator> coordinators;
+    private final Strategy strategy;
+    private final int maxConnections;
+    private final long acquireTimeoutMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private ConnectionFactory(List<Coordinator> coordinators, Strategy strategy, int maxConnections,
+            long acquireTimeoutMillis) {
+        this.coordinators = coordinators;
+        this.strategy = strategy;
+        this.maxConnections = maxConnections;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * the instance shared by the process, built by the first call
+     *
+     * @param builder the configuration, ignored once the instance exists
+     * @return the shared instance
+     */
+    public static synchronized ConnectionFactory shared(Builder builder) {
+        if (shared == null) {
+            shared = builder.build();
+        }
+        return shared;
+    }
+
+    /**
+     * @return the ArangoDB instance of the coordinator picked by the strategy;
+     *         calls on it are neither counted as in flight nor limited by the
+     *         permits, so LEAST_IN_FLIGHT only sees the calls of `execute`
+     */
+    public ArangoDB arango() {
+        return pick().arangoDB;
+    }
+
+    /**
+     * @param name name of the database
+     * @return the database on the coordinator picked by the strategy, not
+     *         counted as in flight, see `arango()`
+     */
+    public ArangoDatabase db(String name) {
+        return arango().db(DbName.of(name));
+    }
+
+    /**
+     * run a call on the coordinator picked by the strategy, counting it as in
+     * flight until it returns
+     *
+     * @param call the driver call
+     * @return the result of the call
+     * @throws ArangoDBException if no connection is free within the acquire
+     *                           timeout
+     */
+    public <T> T execute(Function<ArangoDB, T> call) {
+        Coordinator coordinator = pick();
+        acquire(coordinator);
+        int inFlight = coordinator.inFlight.incrementAndGet();
+        coordinator.peakInFlight.accumulateAndGet(inFlight, Math::max);
+        try {
+            return call.apply(coordinator.arangoDB);
+        } finally {
+            coordinator.inFlight.decrementAndGet();
+            coordinator.permits.release();
+        }
+    }
+
+    private void acquire(Coordinator coordinator) {
+        coordinator.calls.incrementAndGet();
+        if (coordinator.permits.tryAcquire()) {
+            return;
+        }
+        coordinator.waits.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            boolean acquired = coordinator.permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            coordinator.waitNanos.addAndGet(System.nanoTime() - start);
+            if (!acquired) {
+                coordinator.timeouts.incrementAndGet();
+                throw new ArangoDBException("No connection to " + coordinator.endpoint + " free within "
+                        + acquireTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ArangoDBException(e);
+        }
+    }
+
+    /**
+     * open all pooled connections of every coordinator up front,
+     * by sending `maxConnections` concurrent version requests to each
+     */
+    public void warmUp() {
+        ExecutorService pool = Executors.newFixedThreadPool(maxConnections * coordinators.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Coordinator coordinator : coordinators) {
+                for (int i = 0; i < maxConnections; i++) {
+                    futures.add(pool.submit(() -> coordinator.arangoDB.getVersion()));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            logger.info("Warmed up {} connections to each of {}", maxConnections, endpoints());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ArangoDBException(e);
+        } catch (ExecutionException e) {
+            throw new ArangoDBException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public List<String> endpoints() {
+        List<String> endpoints = new ArrayList<>();
+        coordinators.forEach(coordinator -> endpoints.add(coordinator.endpoint));
+        return endpoints;
+    }
+
+    /**
+     * @return the saturation of the pool of every coordinator
+     */
+    public List<PoolStats> stats() {
+        List<PoolStats> stats = new ArrayList<>();
+        for (Coordinator coordinator : coordinators) {
+            stats.add(new PoolStats(coordinator.endpoint, maxConnections, coordinator.calls.get(),
+                    coordinator.waits.get(), coordinator.waitNanos.get() / 1e6, coordinator.timeouts.get(),
+                    coordinator.inFlight.get(), coordinator.peakInFlight.get()));
+        }
+        return stats;
+    }
+
+    public void shutdown() {
+        stats().forEach(stats -> logger.info(stats.toString()));
+        coordinators.forEach(coordinator -> coordinator.arangoDB.shutdown());
+        synchronized (ConnectionFactory.class) {
+            if (shared == this) {
+                shared = null;
+            }
+        }
+    }
+
+    // the scan starts round-robin, so coordinators with the same number of
+    // calls in flight, e.g. none, take turns instead of the first one taking all
+    private Coordinator pick() {
+        int size = coordinators.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (strategy == Strategy.LEAST_IN_FLIGHT) {
+            Coordinator least = coordinators.get(start);
+            for (int i = 1; i < size; i++) {
+                Coordinator coordinator = coordinators.get((start + i) % size);
+                if (coordinator.inFlight.get() < least.inFlight.get()) {
+                    least = coordinator;
+                }
+            }
+            return least;
+        }
+        return coordinators.get(start);
+    }
+
+    public static class Builder {
+        private final List<String> hosts = new ArrayList<>();
+        private final List<Integer> ports = new ArrayList<>();
+        private String user = "root";
+        private String password = "";
+        private Strategy strategy = Strategy.ROUND_ROBIN;
+        private Protocol protocol = Protocol.VST;
+        private ArangoSerialization serializer;
+        private int maxConnections = 1;
+        private long acquireTimeoutMillis = 10_000;
+
+        public Builder host(String host, int port) {
+            hosts.add(host);
+            ports.add(port);
+            return this;
+        }
+
+        public Builder user(String user) {
+            this.user = user;
+            return this;
+        }
+
+        public Builder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public Builder strategy(Strategy strategy) {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * @param protocol VST (default), HTTP_JSON or HTTP_VPACK; HTTP/1.1 only,
+         *                 the 6.x driver does not support HTTP/2
+         */
+        public Builder protocol(Protocol protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+
+        /**
+         * @param serializer the serializer of all coordinators, ArangoJack by
+         *                   default
+         */
+        public Builder serializer(ArangoSerialization serializer) {
+            this.serializer = serializer;
+            return this;
+        }
+
+        /**
+         * @param maxConnections the size of the connection pool of each coordinator
+         */
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * @param millis how long `execute` waits for a free connection
+         */
+        public Builder acquireTimeout(long millis) {
+            this.acquireTimeoutMillis = millis;
+            return this;
+        }
+
+        public ConnectionFactory build() {
+            if (hosts.isEmpty()) {
+                throw new IllegalStateException("No coordinator configured");
+            }
+            ArangoSerialization serialization = serializer != null ? serializer : new ArangoJack();
+            List<Coordinator> coordinators = new ArrayList<>();
+            for (int i = 0; i < hosts.size(); i++) {
+                ArangoDB.Builder builder = new ArangoDB.Builder()
+                        .serializer(serialization)
+                        .useProtocol(protocol)
+                        .host(hosts.get(i), ports.get(i))
+                        .user(user)
+                        .password(password)
+                        .maxConnections(maxConnections)
+                        // stay on this coordinator, the factory balances the load
+                        .acquireHostList(false);
+                if (protocol == Protocol.VST) {
+                    builder.keepAliveInterval(KEEP_ALIVE_INTERVAL);
+                }
+                coordinators.add(new Coordinator(hosts.get(i) + ":" + ports.get(i), builder.build(), maxConnections));
+            }
+            logger.info("Connecting to {} over {}, {} connections each", hosts, protocol, maxConnections);
+            return new ConnectionFactory(coordinators, strategy, maxConnections, acquireTimeoutMillis);
+        }
+    }
+}
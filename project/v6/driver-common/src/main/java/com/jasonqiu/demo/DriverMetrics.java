@@ -0,0 +1,459 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.async.ArangoCollectionAsync;
+import com.arangodb.entity.*;
+import com.arangodb.model.AqlQueryOptions;
+import com.arangodb.model.DocumentCreateOptions;
+import com.arangodb.model.DocumentReadOptions;
+import com.arangodb.model.StreamTransactionOptions;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * latency, throughput, payload and error statistics of driver calls, per
+ * operation and collection
+ *
+ * Every call through `record` or `recordAsync` (or one of the helpers like
+ * `insertDocuments`) is timed into an HdrHistogram, counted, and emitted as a
+ * JFR event "com.jasonqiu.demo.DriverCall", which costs nothing unless a
+ * flight recording is running (e.g. `-XX:StartFlightRecording`). The bytes in
+ * and out are the velocypack of the documents (de)serialized during the call,
+ * counted by a MeteredSerialization given to the ConnectionFactory.
+ *
+ * As a Micrometer MeterBinder, `bindTo(registry)` publishes the statistics as
+ * the meters "arangodb.client.*" with the tags "operation" and "collection",
+ * e.g. on a JmxMeterRegistry; `unbind(registry)` removes them again.
+ * `report()` logs them.
+ */
+public class DriverMetrics implements MeterBinder {
+
+    private static Logger logger = LoggerFactory.getLogger(DriverMetrics.class);
+
+    private static final DriverMetrics shared = new DriverMetrics();
+
+    private static final String PREFIX = "arangodb.client.";
+
+    // the latency quantiles published on a registry
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    // precision of the histograms, values are recorded with an error below 0.1%
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    // the bytes (de)serialized by the current call of each thread
+    private static final ThreadLocal<Call> current = new ThreadLocal<>();
+
+    /**
+     * a driver call, as a JFR event
+     */
+    @Name("com.jasonqiu.demo.DriverCall")
+    @Label("ArangoDB Driver Call")
+    @Category("ArangoDB")
+    static class CallEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Collection")
+        String collection;
+        @Label("Batch Size")
+        int batchSize;
+        @Label("Bytes Out")
+        @Description("velocypack of the documents serialized")
+        long bytesOut;
+        @Label("Bytes In")
+        @Description("velocypack of the documents deserialized")
+        long bytesIn;
+        @Label("Failed")
+        boolean failed;
+    }
+
+    private static class Call {
+        private final Call parent;
+        private long bytesOut;
+        private long bytesIn;
+
+        private Call(Call parent) {
+            this.parent = parent;
+        }
+    }
+
+    // values recorded without locks by a Recorder, and added up to a
+    // histogram of all values whenever they are read
+    private static class Distribution {
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        private void record(long value) {
+            recorder.recordValue(Math.max(value, 0));
+        }
+
+        private synchronized double read(ToDoubleFunction<Histogram> function) {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return function.applyAsDouble(total);
+        }
+
+        private synchronized Histogram copy() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return total.copy();
+        }
+    }
+
+    /**
+     * the statistics of one operation on one collection
+     */
+    public static class Meter {
+        private final String operation;
+        private final String collection;
+        private final Distribution latency = new Distribution();
+        private final Distribution batchSizes = new Distribution();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+
+        private Meter(String operation, String collection) {
+            this.operation = operation;
+            this.collection = collection;
+        }
+
+        private void record(long nanos, int batchSize, long bytesOut, long bytesIn, boolean failed) {
+            latency.record(nanos);
+            batchSizes.record(batchSize);
+            calls.increment();
+            this.nanos.add(nanos);
+            this.bytesOut.add(bytesOut);
+            this.bytesIn.add(bytesIn);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        private void bindTo(MeterRegistry registry) {
+            Tags tags = Tags.of("operation", operation, "collection", collection);
+            FunctionTimer.builder(PREFIX + "requests", this, meter -> meter.calls.sum(),
+                    meter -> meter.nanos.sum(), TimeUnit.NANOSECONDS)
+                    .tags(tags).description("driver calls").register(registry);
+            for (double quantile : QUANTILES) {
+                TimeGauge.builder(PREFIX + "latency", this, TimeUnit.NANOSECONDS,
+                        meter -> meter.latency.read(histogram -> histogram.getValueAtPercentile(quantile * 100)))
+                        .tags(tags).tag("quantile", Double.toString(quantile)).register(registry);
+            }
+            TimeGauge.builder(PREFIX + "latency.max", this, TimeUnit.NANOSECONDS,
+                    meter -> meter.latency.read(Histogram::getMaxValue)).tags(tags).register(registry);
+            FunctionCounter.builder(PREFIX + "errors", this, meter -> meter.errors.sum())
+                    .tags(tags).description("failed calls and documents rejected by the server").register(registry);
+            FunctionCounter.builder(PREFIX + "bytes.out", this, meter -> meter.bytesOut.sum())
+                    .tags(tags).baseUnit(BaseUnits.BYTES).register(registry);
+            FunctionCounter.builder(PREFIX + "bytes.in", this, meter -> meter.bytesIn.sum())
+                    .tags(tags).baseUnit(BaseUnits.BYTES).register(registry);
+            Gauge.builder(PREFIX + "batch.size.mean", this, meter -> meter.batchSizes.read(Histogram::getMean))
+                    .tags(tags).register(registry);
+            Gauge.builder(PREFIX + "batch.size.max", this, meter -> meter.batchSizes.read(Histogram::getMaxValue))
+                    .tags(tags).register(registry);
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        /**
+         * @return a copy of the latencies in nanoseconds
+         */
+        public Histogram getLatency() {
+            return latency.copy();
+        }
+
+        /**
+         * @return a copy of the number of documents per call
+         */
+        public Histogram getBatchSizes() {
+            return batchSizes.copy();
+        }
+
+        /**
+         * @return failed calls and documents rejected by the server
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getBytesOut() {
+            return bytesOut.sum();
+        }
+
+        public long getBytesIn() {
+            return bytesIn.sum();
+        }
+
+        @Override
+        public String toString() {
+            Histogram histogram = getLatency();
+            return String.format("%s %s: %d calls, %d errors, p50 %.2f ms, p99 %.2f ms, max %.2f ms, "
+                    + "%.1f docs/call, %d bytes out, %d bytes in", operation, collection,
+                    histogram.getTotalCount(), getErrors(), histogram.getValueAtPercentile(50) / 1e6,
+                    histogram.getValueAtPercentile(99) / 1e6, histogram.getMaxValue() / 1e6,
+                    batchSizes.read(Histogram::getMean), getBytesOut(), getBytesIn());
+        }
+    }
+
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the instance shared by the process
+     */
+    public static DriverMetrics shared() {
+        return shared;
+    }
+
+    /**
+     * publish the statistics of every operation and collection on a registry,
+     * also the ones of operations first called later
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        registries.add(registry);
+        meters.values().forEach(meter -> meter.bindTo(registry));
+    }
+
+    /**
+     * remove the meters published by `bindTo` from a registry
+     */
+    public void unbind(MeterRegistry registry) {
+        registries.remove(registry);
+        new ArrayList<>(registry.getMeters()).stream()
+                .filter(meter -> meter.getId().getName().startsWith(PREFIX))
+                .forEach(registry::remove);
+    }
+
+    /**
+     * time a driver call and count it as an operation on a collection
+     *
+     * @param operation  e.g. "insertDocuments"
+     * @param collection the collection, or the name of a query
+     * @param batchSize  the number of documents sent, 0 if none
+     * @param call       the driver call
+     * @return the result of the call
+     */
+    public <T> T record(String operation, String collection, int batchSize, Supplier<T> call) {
+        Meter meter = meter(operation, collection);
+        CallEvent event = new CallEvent();
+        Call parent = current.get();
+        Call bytes = new Call(parent);
+        current.set(bytes);
+        boolean failed = true;
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            current.set(parent);
+            if (parent != null) {
+                parent.bytesOut += bytes.bytesOut;
+                parent.bytesIn += bytes.bytesIn;
+            }
+            complete(meter, event, batchSize, nanos, bytes.bytesOut, bytes.bytesIn, failed);
+        }
+    }
+
+    /**
+     * time an asynchronous driver call until its future completes
+     *
+     * No bytes are counted: the async driver (de)serializes the documents on
+     * its own threads, outside of the call.
+     *
+     * @return a future completed after the call has been recorded
+     */
+    public <T> CompletableFuture<T> recordAsync(String operation, String collection, int batchSize,
+            Supplier<CompletableFuture<T>> call) {
+        Meter meter = meter(operation, collection);
+        CallEvent event = new CallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            complete(meter, event, batchSize, System.nanoTime() - start, 0, 0, true);
+            throw e;
+        }
+        return future.whenComplete(
+                (result, e) -> complete(meter, event, batchSize, System.nanoTime() - start, 0, 0, e != null));
+    }
+
+    private static void complete(Meter meter, CallEvent event, int batchSize, long nanos, long bytesOut,
+            long bytesIn, boolean failed) {
+        event.end();
+        meter.record(nanos, batchSize, bytesOut, bytesIn, failed);
+        if (event.shouldCommit()) {
+            event.operation = meter.operation;
+            event.collection = meter.collection;
+            event.batchSize = batchSize;
+            event.bytesOut = bytesOut;
+            event.bytesIn = bytesIn;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    // called by MeteredSerialization
+    static void addBytesOut(long bytes) {
+        Call call = current.get();
+        if (call != null) {
+            call.bytesOut += bytes;
+        }
+    }
+
+    static void addBytesIn(long bytes) {
+        Call call = current.get();
+        if (call != null) {
+            call.bytesIn += bytes;
+        }
+    }
+
+    /**
+     * insert documents; the documents rejected by the server count as errors
+     */
+    public <T> MultiDocumentEntity<DocumentCreateEntity<T>> insertDocuments(ArangoCollection collection,
+            Collection<T> documents, DocumentCreateOptions options) {
+        MultiDocumentEntity<DocumentCreateEntity<T>> result = record("insertDocuments", collection.name(),
+                documents.size(), () -> collection.insertDocuments(documents, options));
+        if (!result.getErrors().isEmpty()) {
+            meter("insertDocuments", collection.name()).errors.add(result.getErrors().size());
+        }
+        return result;
+    }
+
+    /**
+     * insert documents with the async driver; the documents rejected by the
+     * server count as errors
+     */
+    public <T> CompletableFuture<MultiDocumentEntity<DocumentCreateEntity<T>>> insertDocumentsAsync(
+            ArangoCollectionAsync collection, Collection<T> documents) {
+        return recordAsync("insertDocuments", collection.name(), documents.size(),
+                () -> collection.insertDocuments(documents)).whenComplete((result, e) -> {
+                    if (result != null && !result.getErrors().isEmpty()) {
+                        meter("insertDocuments", collection.name()).errors.add(result.getErrors().size());
+                    }
+                });
+    }
+
+    /**
+     * update documents; the documents rejected by the server, e.g. with a
+     * conflict, count as errors
+     */
+    public <T> MultiDocumentEntity<DocumentUpdateEntity<T>> updateDocuments(ArangoCollection collection,
+            Collection<T> documents) {
+        MultiDocumentEntity<DocumentUpdateEntity<T>> result = record("updateDocuments", collection.name(),
+                documents.size(), () -> collection.updateDocuments(documents));
+        if (!result.getErrors().isEmpty()) {
+            meter("updateDocuments", collection.name()).errors.add(result.getErrors().size());
+        }
+        return result;
+    }
+
+    /**
+     * open the cursor of a query; only the query and its first batch are
+     * timed, the later batches are fetched while the cursor is read
+     */
+    public <T> ArangoCursor<T> cursor(ArangoDatabase db, String name, String query, Map<String, Object> bindVars,
+            AqlQueryOptions options, Class<T> type) {
+        return record("query", name, 0, () -> db.query(query, bindVars, options, type));
+    }
+
+    public StreamTransactionEntity beginStreamTransaction(ArangoDatabase db, StreamTransactionOptions options) {
+        return record("beginStreamTransaction", db.dbName().get(), 0, () -> db.beginStreamTransaction(options));
+    }
+
+    public StreamTransactionEntity commitStreamTransaction(ArangoDatabase db, String id) {
+        return record("commitStreamTransaction", db.dbName().get(), 0, () -> db.commitStreamTransaction(id));
+    }
+
+    public StreamTransactionEntity abortStreamTransaction(ArangoDatabase db, String id) {
+        return record("abortStreamTransaction", db.dbName().get(), 0, () -> db.abortStreamTransaction(id));
+    }
+
+    public DocumentCreateEntity<Object> insertDocument(ArangoCollection collection, Object document) {
+        return record("insertDocument", collection.name(), 1, () -> collection.insertDocument(document));
+    }
+
+    public <T> T getDocument(ArangoCollection collection, String key, Class<T> type, DocumentReadOptions options) {
+        return record("getDocument", collection.name(), 0, () -> collection.getDocument(key, type, options));
+    }
+
+    public VertexEntity insertVertex(ArangoVertexCollection collection, Object vertex) {
+        return record("insertVertex", collection.name(), 1, () -> collection.insertVertex(vertex));
+    }
+
+    public EdgeEntity insertEdge(ArangoEdgeCollection collection, Object edge) {
+        return record("insertEdge", collection.name(), 1, () -> collection.insertEdge(edge));
+    }
+
+    private Meter meter(String operation, String collection) {
+        String key = operation + " " + collection;
+        Meter meter = meters.get(key);
+        if (meter == null) {
+            Meter created = new Meter(operation, collection);
+            meter = meters.putIfAbsent(key, created);
+            if (meter == null) {
+                // a registry bound meanwhile gets it twice, which it ignores
+                registries.forEach(created::bindTo);
+                meter = created;
+            }
+        }
+        return meter;
+    }
+
+    /**
+     * @return the statistics of every operation and collection
+     */
+    public List<Meter> getMeters() {
+        List<Meter> list = new ArrayList<>(meters.values());
+        list.sort(Comparator.comparing(Meter::getOperation).thenComparing(Meter::getCollection));
+        return list;
+    }
+
+    /**
+     * log the statistics of every operation and collection
+     */
+    public void report() {
+        getMeters().forEach(meter -> logger.info(meter.toString()));
+    }
+}
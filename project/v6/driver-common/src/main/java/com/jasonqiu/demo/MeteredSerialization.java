@@ -0,0 +1,48 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.ArangoDBException;
+import com.arangodb.util.ArangoSerialization;
+import com.arangodb.velocypack.VPackSlice;
+
+import java.lang.reflect.Type;
+
+/**
+ * a serializer which counts the velocypack of the documents it serializes and
+ * deserializes as the bytes out and in of the current DriverMetrics call,
+ * e.g. `new ConnectionFactory.Builder().serializer(new
+ * MeteredSerialization(new ArangoJack()))`
+ *
+ * The synchronous driver (de)serializes the documents in the calling thread,
+ * so they are counted for the call which sends or receives them.
+ */
+public class MeteredSerialization implements ArangoSerialization {
+
+    private final ArangoSerialization serialization;
+
+    /**
+     * @param serialization the serializer doing the work, e.g. ArangoJack
+     */
+    public MeteredSerialization(ArangoSerialization serialization) {
+        this.serialization = serialization;
+    }
+
+    @Override
+    public VPackSlice serialize(Object entity) throws ArangoDBException {
+        VPackSlice slice = serialization.serialize(entity);
+        DriverMetrics.addBytesOut(slice.getByteSize());
+        return slice;
+    }
+
+    @Override
+    public VPackSlice serialize(Object entity, Options options) throws ArangoDBException {
+        VPackSlice slice = serialization.serialize(entity, options);
+        DriverMetrics.addBytesOut(slice.getByteSize());
+        return slice;
+    }
+
+    @Override
+    public <T> T deserialize(VPackSlice vpack, Type type) throws ArangoDBException {
+        DriverMetrics.addBytesIn(vpack.getByteSize());
+        return serialization.deserialize(vpack, type);
+    }
+}
@@ -0,0 +1,100 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.ArangoDBException;
+import com.arangodb.async.ArangoCollectionAsync;
+import com.arangodb.async.ArangoDatabaseAsync;
+
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * import csv rows into a collection with the asynchronous driver API:
+ * the calling thread keeps parsing the next chunk while previous chunks are on
+ * the wire, with at most `maxInFlight` batch inserts pending at a time.
+ *
+ * When the coordinator slows down, the responses come back later, no permit is
+ * free, and the reader blocks until one of the pending inserts completes; so
+ * the reader never runs ahead of the server by more than `maxInFlight` chunks.
+ */
+public class AsyncImporter {
+
+    private static Logger logger = LoggerFactory.getLogger(AsyncImporter.class);
+
+    private final ArangoDatabaseAsync db;
+    private final int maxInFlight;
+    private final int chunkSize;
+
+    /**
+     * @param db          ArangoDatabaseAsync, its ArangoDBAsync should allow at
+     *                    least `maxInFlight` connections
+     * @param maxInFlight the maximum number of pending batch inserts
+     * @param chunkSize   number of rows in one batch insert
+     */
+    public AsyncImporter(ArangoDatabaseAsync db, int maxInFlight, int chunkSize) {
+        this.db = db;
+        this.maxInFlight = maxInFlight;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * split the rows into chunks and insert them asynchronously,
+     * returns only after every chunk has been inserted
+     *
+     * @param collection name of the collection
+     * @param rows       the source iterator, only read by the calling thread
+     * @param transform  applied to every row before it is added to a chunk
+     * @return the statistics of the import
+     */
+    public <T, R> ParallelImporter.ImportStats importCollection(String collection, Iterator<T> rows,
+            Function<T, R> transform) {
+        ArangoCollectionAsync coll = db.collection(collection);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicLong errors = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] blockedNanos = { 0 };
+
+        long start = System.nanoTime();
+        long count = Utils.forEachChunk(rows, transform, chunkSize, chunk -> {
+            if (failure.get() != null) {
+                throw new ArangoDBException(failure.get());
+            }
+            long waitStart = System.nanoTime();
+            inFlight.acquireUninterruptibly();
+            blockedNanos[0] += System.nanoTime() - waitStart;
+            try {
+                DriverMetrics.shared().insertDocumentsAsync(coll, chunk).whenComplete((result, e) -> {
+                    if (e != null) {
+                        failure.compareAndSet(null, e);
+                    } else if (!result.getErrors().isEmpty()) {
+                        errors.addAndGet(result.getErrors().size());
+                        logger.warn("{} of {} documents rejected by collection \"{}\"; first error: {}",
+                                result.getErrors().size(), chunk.size(), collection,
+                                result.getErrors().iterator().next().getErrorMessage());
+                    }
+                    inFlight.release();
+                });
+            } catch (RuntimeException e) {
+                // thrown before a future exists, so no callback releases the permit
+                inFlight.release();
+                throw e;
+            }
+        });
+        // wait for the pending inserts
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+        if (failure.get() != null) {
+            throw new ArangoDBException(failure.get());
+        }
+
+        ParallelImporter.ImportStats stats = new ParallelImporter.ImportStats(collection, count, errors.get(),
+                System.nanoTime() - start);
+        logger.info("{}; reader blocked by backpressure for {} ms", stats, String.format("%.1f", blockedNanos[0] / 1e6));
+        return stats;
+    }
+}
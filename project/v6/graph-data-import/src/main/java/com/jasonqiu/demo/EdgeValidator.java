@@ -0,0 +1,90 @@
+package com.jasonqiu.demo;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * check on the client that both end vertices of an edge have been imported,
+ * before the edge is sent to the server
+ *
+ * The ids of the imported vertices are kept in a LongHashSet; edges with an
+ * unknown end vertex are written to a reject file instead of being inserted.
+ */
+public class EdgeValidator implements Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(EdgeValidator.class);
+
+    private final LongHashSet vertexIds;
+    private final Path rejectFile;
+    private final String header;
+    private Writer rejects;
+    private long accepted;
+    private long rejected;
+
+    /**
+     * @param rejectFile   the file of the rejected edges, only created if an edge
+     *                     is rejected, a reject file of a previous run is removed
+     * @param header       the header row of the reject file, e.g.,
+     *                     "src.id|dst.id|creationDate"
+     * @param expectedSize the number of vertices expected, to avoid rehashing
+     * @throws IOException if a previous reject file cannot be removed
+     */
+    public EdgeValidator(Path rejectFile, String header, int expectedSize) throws IOException {
+        Files.deleteIfExists(rejectFile);
+        this.vertexIds = new LongHashSet(expectedSize);
+        this.rejectFile = rejectFile;
+        this.header = header;
+    }
+
+    public void addVertex(long id) {
+        vertexIds.add(id);
+    }
+
+    /**
+     * @param srcId id of the source vertex
+     * @param dstId id of the target vertex
+     * @param row   the edge as a row of the reject file, only called if the edge
+     *              is rejected
+     * @return true if both vertices are known, otherwise the edge is written to
+     *         the reject file
+     */
+    public boolean accept(long srcId, long dstId, Supplier<String> row) {
+        if (vertexIds.contains(srcId) && vertexIds.contains(dstId)) {
+            accepted++;
+            return true;
+        }
+        rejected++;
+        try {
+            if (rejects == null) {
+                rejects = Files.newBufferedWriter(rejectFile);
+                rejects.write(header);
+                rejects.write('\n');
+            }
+            rejects.write(row.get());
+            rejects.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return false;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rejects != null) {
+            rejects.close();
+            logger.warn("{} edges with unknown vertices written to {}", rejected, rejectFile);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.jasonqiu.demo;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Properties;
+
+/**
+ * a local checkpoint of an import: for every csv file, the byte offset of the
+ * first row not yet committed and the number of rows committed so far.
+ *
+ * The checkpoint is written to a temporary file and moved over the previous
+ * one, so a crash never leaves a partially written checkpoint behind.
+ */
+public class ImportCheckpoint {
+
+    private final Path path;
+    private final Properties state = new Properties();
+
+    private ImportCheckpoint(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * load the checkpoint from a file, or start an empty one if the file does
+     * not exist
+     *
+     * @param path the checkpoint file
+     * @return the checkpoint
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static ImportCheckpoint load(Path path) throws IOException {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(path);
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path)) {
+                checkpoint.state.load(reader);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return true if the checkpoint file exists, i.e., a previous import has
+     *         not finished
+     */
+    public static boolean exists(Path path) {
+        return Files.exists(path);
+    }
+
+    /**
+     * @param file the csv file
+     * @return byte offset of the first uncommitted row, 0 if nothing is committed
+     */
+    public long getOffset(String file) {
+        return Long.parseLong(state.getProperty(file + ".offset", "0"));
+    }
+
+    /**
+     * @param file the csv file
+     * @return number of rows committed so far
+     */
+    public long getRows(String file) {
+        return Long.parseLong(state.getProperty(file + ".rows", "0"));
+    }
+
+    /**
+     * record a committed chunk and persist the checkpoint
+     *
+     * @param file   the csv file
+     * @param offset byte offset of the row after the chunk
+     * @param rows   number of rows committed so far, including the chunk
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void commit(String file, long offset, long rows) throws IOException {
+        state.setProperty(file + ".offset", Long.toString(offset));
+        state.setProperty(file + ".rows", Long.toString(rows));
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp)) {
+            state.store(writer, "graph-data-import checkpoint");
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * remove the checkpoint file once the import has finished
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
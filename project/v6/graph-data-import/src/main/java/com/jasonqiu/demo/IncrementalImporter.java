@@ -0,0 +1,199 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.entity.CollectionEntity;
+import com.arangodb.entity.CollectionType;
+import com.arangodb.entity.DocumentCreateEntity;
+import com.arangodb.entity.ErrorEntity;
+import com.arangodb.entity.MultiDocumentEntity;
+import com.arangodb.model.DocumentCreateOptions;
+import com.arangodb.model.OverwriteMode;
+
+import java.util.*;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * re-import csv rows into an existing collection, touching only the rows which
+ * are new or have changed since the last import
+ *
+ * Every chunk is compared with the stored documents of the same keys first:
+ * new rows are inserted, unchanged rows are skipped, and changed rows are
+ * written with the overwrite mode (update or replace), or skipped with ignore.
+ * A stored value equals a csv field if it reads the same as in the csv file,
+ * so documents of the typed import with numbers and arrays are not rewritten.
+ *
+ * All rows therefore need a deterministic "_key", for edges the one of
+ * `Utils.toKeyedEdge`. An edge collection whose edges have keys generated by
+ * the server, e.g. after an import in the mode `memory`, would get every edge
+ * a second time, so it is refused.
+ */
+public class IncrementalImporter {
+
+    private static Logger logger = LoggerFactory.getLogger(IncrementalImporter.class);
+
+    // attributes set by the server, not compared with the csv rows
+    private static final Set<String> SYSTEM_ATTRIBUTES = Set.of("_id", "_key", "_rev");
+
+    private final ArangoDatabase db;
+    private final OverwriteMode mode;
+    private final int chunkSize;
+
+    /**
+     * @param db        ArangoDatabase
+     * @param mode      how changed rows are written: update, replace or ignore
+     * @param chunkSize number of rows compared and written at a time
+     */
+    public IncrementalImporter(ArangoDatabase db, OverwriteMode mode, int chunkSize) {
+        this.db = db;
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param collection name of the collection
+     * @param rows       the source iterator
+     * @param transform  turns a row into a document with a "_key"
+     * @return the counts of the whole collection
+     * @throws IllegalStateException if the edges of the collection are not
+     *                               keyed as by `Utils.toKeyedEdge`
+     */
+    public <T> Counts importCollection(String collection, Iterator<T> rows,
+            Function<T, Map<String, String>> transform) {
+        ArangoCollection coll = db.collection(collection);
+        CollectionEntity info = DriverMetrics.shared().record("getInfo", collection, 0, coll::getInfo);
+        if (info.getType() == CollectionType.EDGES) {
+            checkEdgeKeys(collection);
+        }
+        Counts[] total = { new Counts(0, 0, 0, 0) };
+        int[] chunkNumber = { 0 };
+        Utils.forEachChunk(rows, transform, chunkSize, chunk -> {
+            Counts counts = importChunk(coll, chunk);
+            total[0] = total[0].plus(counts);
+            logger.info("Collection \"{}\", chunk {}: {}", collection, ++chunkNumber[0], counts);
+        });
+        logger.info("Collection \"{}\" in total: {}", collection, total[0]);
+        return total[0];
+    }
+
+    private Counts importChunk(ArangoCollection coll, List<Map<String, String>> chunk) {
+        List<String> keys = new ArrayList<>(chunk.size());
+        chunk.forEach(doc -> keys.add(doc.get("_key")));
+
+        // the stored documents of this chunk, missing keys are reported as errors
+        @SuppressWarnings("unchecked")
+        MultiDocumentEntity<Map<String, Object>> stored = DriverMetrics.shared().record("getDocuments",
+                coll.name(), keys.size(), () -> coll.getDocuments(keys,
+                        (Class<Map<String, Object>>) ((Class<?>) Map.class)));
+        Map<String, Map<String, Object>> existing = new HashMap<>();
+        for (Map<String, Object> doc : stored.getDocuments()) {
+            existing.put(doc.get("_key").toString(), doc);
+        }
+
+        long inserted = 0;
+        long updated = 0;
+        long ignored = 0;
+        long errors = 0;
+        List<Map<String, String>> writes = new ArrayList<>();
+        // whether each write is a new document
+        List<Boolean> inserts = new ArrayList<>();
+        for (Map<String, String> doc : chunk) {
+            Map<String, Object> old = existing.get(doc.get("_key"));
+            if (old != null && (mode == OverwriteMode.ignore || !changed(doc, old))) {
+                ignored++;
+            } else {
+                writes.add(doc);
+                inserts.add(old == null);
+            }
+        }
+
+        if (!writes.isEmpty()) {
+            MultiDocumentEntity<DocumentCreateEntity<Map<String, String>>> result = DriverMetrics.shared()
+                    .insertDocuments(coll, writes, new DocumentCreateOptions().overwriteMode(mode));
+            // the results are in the order of the writes, only the documents
+            // accepted by the server are counted as inserted or updated
+            int i = 0;
+            for (Object entity : result.getDocumentsAndErrors()) {
+                if (entity instanceof ErrorEntity) {
+                    errors++;
+                } else if (inserts.get(i)) {
+                    inserted++;
+                } else {
+                    updated++;
+                }
+                i++;
+            }
+            if (errors > 0) {
+                logger.warn("{} of {} documents rejected by collection \"{}\"; first error: {}",
+                        errors, writes.size(), coll.name(),
+                        result.getErrors().iterator().next().getErrorMessage());
+            }
+        }
+        return new Counts(inserted, updated, ignored, errors);
+    }
+
+    // refuse an edge collection with keys of the server: one edge is enough,
+    // all edges of an import share the same kind of key
+    private void checkEdgeKeys(String collection) {
+        ArangoCursor<String> cursor = DriverMetrics.shared().record("query", "checkEdgeKeys", 0,
+                () -> db.query("FOR e IN @@collection LIMIT 1 "
+                        + "FILTER e._key != CONCAT(PARSE_IDENTIFIER(e._from).key, '-', PARSE_IDENTIFIER(e._to).key) "
+                        + "RETURN e._key", Map.of("@collection", collection), null, String.class));
+        if (cursor.hasNext()) {
+            throw new IllegalStateException("Collection \"" + collection + "\" has edges without the key "
+                    + "<src.id>-<dst.id>, e.g. \"" + cursor.next() + "\"; drop the database or import it in "
+                    + "the mode checkpoint or incremental first");
+        }
+    }
+
+    // with update, a document has changed if any attribute of the row differs;
+    // with replace, also if the stored document has attributes the row has not
+    private boolean changed(Map<String, String> doc, Map<String, Object> old) {
+        for (Map.Entry<String, String> attribute : doc.entrySet()) {
+            if (!attribute.getValue().equals(normalize(old.get(attribute.getKey())))) {
+                return true;
+            }
+        }
+        if (mode == OverwriteMode.replace) {
+            for (String attribute : old.keySet()) {
+                if (!SYSTEM_ATTRIBUTES.contains(attribute) && !doc.containsKey(attribute)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // a stored value as it reads in the csv file: numbers as digits, arrays
+    // joined by ';' as `email` and `speaks`, and a missing value as empty
+    private static String normalize(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof List<?> list) {
+            StringJoiner joined = new StringJoiner(";");
+            list.forEach(element -> joined.add(normalize(element)));
+            return joined.toString();
+        }
+        return value.toString();
+    }
+
+    /**
+     * the number of documents inserted, updated (or replaced) and ignored
+     */
+    public record Counts(long inserted, long updated, long ignored, long errors) {
+
+        public Counts plus(Counts other) {
+            return new Counts(inserted + other.inserted, updated + other.updated, ignored + other.ignored,
+                    errors + other.errors);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d inserted, %d updated, %d ignored, %d errors", inserted, updated, ignored,
+                    errors);
+        }
+    }
+}
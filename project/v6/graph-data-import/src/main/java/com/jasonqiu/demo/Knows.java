@@ -0,0 +1,28 @@
+package com.jasonqiu.demo;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * a row of person_knows_person.csv with typed fields,
+ * read by Jackson from the csv file and serialized by ArangoJack as an edge
+ * 
+ * "src.id" and "dst.id" are only read from the csv file and stored as the
+ * document handles "_from" and "_to" in the "person" collection
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Knows(
+        @JsonProperty(value = "src.id", access = JsonProperty.Access.WRITE_ONLY) long srcId,
+        @JsonProperty(value = "dst.id", access = JsonProperty.Access.WRITE_ONLY) long dstId,
+        long creationDate) {
+
+    @JsonProperty("_from")
+    public String from() {
+        return "person/" + srcId;
+    }
+
+    @JsonProperty("_to")
+    public String to() {
+        return "person/" + dstId;
+    }
+}
@@ -0,0 +1,565 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.velocypack.VPackSlice;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * a parser for the '|' separated LDBC files on top of a memory-mapped file.
+ *
+ * A row is only sliced into field offsets of the mapped buffer;
+ * the fields are turned into Strings, numbers or velocypack only on request.
+ * The parser is a flyweight: the accessors always refer to the current row,
+ * which is replaced by the next call of `next()`.
+ */
+public class LdbcCsvParser implements Closeable {
+
+    // the largest region of the file mapped at a time
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private static final int QUOTED = 1;
+    private static final int ESCAPED = 2;
+
+    private static final byte EMPTY_OBJECT = 0x0a;
+    private static final byte COMPACT_OBJECT = 0x14;
+    private static final int MAX_VARINT = 5;
+    // "_key" as a velocypack string
+    private static final byte[] KEY = { 0x44, '_', 'k', 'e', 'y' };
+
+    private static final int ROW = 0;
+    private static final int EOF = 1;
+    private static final int REMAP = 2;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final char columnSeparator;
+    private final int windowSize;
+    private final List<String> header;
+
+    private MappedByteBuffer window;
+    // absolute offset of the mapped window in the file
+    private long windowStart;
+    // relative offsets of the current row and of the next row
+    private int rowStart;
+    private int cursor;
+
+    // relative offsets of the fields of the current row
+    private int fields;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] flags = new int[16];
+    private byte[] scratch = new byte[256];
+
+    // the members of the object written by `toVPack`, reused for every row
+    private byte[] vpack = new byte[256];
+    // the arrays of the last call of `toVPack` and their encoded elements
+    private String[] encodedAttributes;
+    private String[] encodedPrefixes;
+    private byte[][] names;
+    private byte[][] prefixBytes;
+
+    /**
+     * @param file            the csv file, with a header row
+     * @param columnSeparator the column separator used in the csv file, '|' here
+     * @throws IOException if the file cannot be read
+     */
+    public LdbcCsvParser(Path file, char columnSeparator) throws IOException {
+        this(file, columnSeparator, 0, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param file            the csv file, with a header row
+     * @param columnSeparator the column separator used in the csv file, '|' here
+     * @param offset          byte offset of the first row to be read,
+     *                        i.e., a value of `position()`; 0 to start after the
+     *                        header
+     * @param windowSize      the largest region of the file mapped at a time,
+     *                        must be larger than any row
+     * @throws IOException if the file cannot be read
+     */
+    public LdbcCsvParser(Path file, char columnSeparator, long offset, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.columnSeparator = columnSeparator;
+        this.windowSize = windowSize;
+        map(0);
+        if (!next()) {
+            close();
+            throw new IOException("Missing header in " + file);
+        }
+        List<String> names = new ArrayList<>(fields);
+        for (int i = 0; i < fields; i++) {
+            names.add(getString(i));
+        }
+        this.header = Collections.unmodifiableList(names);
+        if (offset > position()) {
+            map(offset);
+        }
+        this.fields = 0;
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    /**
+     * @param name name of a column in the header
+     * @return index of the column, or -1 if there is no such column
+     */
+    public int columnIndex(String name) {
+        return header.indexOf(name);
+    }
+
+    /**
+     * advance to the next row
+     *
+     * @return false if there are no more rows
+     * @throws IOException if the file cannot be mapped
+     *                     or a row is larger than the window
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int result = scanRow();
+            if (result == ROW) {
+                return true;
+            }
+            if (result == EOF) {
+                fields = 0;
+                return false;
+            }
+            if (rowStart == 0 && window.limit() == windowSize) {
+                throw new IOException("Row at byte " + windowStart + " is larger than " + windowSize + " bytes");
+            }
+            map(windowStart + rowStart);
+        }
+    }
+
+    /**
+     * @return byte offset of the row after the current row,
+     *         a parser created with this offset continues from there
+     */
+    public long position() {
+        return windowStart + cursor;
+    }
+
+    /**
+     * @return the number of fields in the current row
+     */
+    public int fieldCount() {
+        return fields;
+    }
+
+    public boolean isEmpty(int column) {
+        return column >= fields || starts[column] == ends[column];
+    }
+
+    /**
+     * @return the field as a String, without the enclosing quotes
+     */
+    public String getString(int column) {
+        if (column >= fields) {
+            return "";
+        }
+        String value = decode(starts[column], ends[column]);
+        return (flags[column] & ESCAPED) != 0 ? value.replace("\"\"", "\"") : value;
+    }
+
+    /**
+     * parse the field as a decimal long, without creating a String
+     *
+     * @throws NumberFormatException if the field is not a decimal long
+     */
+    public long getLong(int column) {
+        if (isEmpty(column)) {
+            throw new NumberFormatException("Empty field " + column);
+        }
+        int p = starts[column];
+        int end = ends[column];
+        boolean negative = window.get(p) == '-';
+        if (negative || window.get(p) == '+') {
+            p++;
+        }
+        if (p == end) {
+            throw new NumberFormatException("Not a number: " + getString(column));
+        }
+        long value = 0;
+        for (; p < end; p++) {
+            int digit = window.get(p) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + getString(column));
+            }
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    public int getInt(int column) {
+        return Math.toIntExact(getLong(column));
+    }
+
+    /**
+     * @return the current row as it is in the file, without the line break
+     */
+    public String getRow() {
+        int end = cursor;
+        while (end > rowStart && (window.get(end - 1) == '\n' || window.get(end - 1) == '\r')) {
+            end--;
+        }
+        return decode(rowStart, end);
+    }
+
+    /**
+     * split a multi-value field like `email` or `speaks`, e.g., "ar;fr;en"
+     *
+     * @param elementSeparator the separator of the values, ';' in LDBC
+     * @return the values, empty if the field is empty
+     */
+    public List<String> getArray(int column, char elementSeparator) {
+        if (isEmpty(column)) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>();
+        int from = starts[column];
+        int end = ends[column];
+        for (int p = from; p < end; p++) {
+            if (window.get(p) == elementSeparator) {
+                values.add(decode(from, p));
+                from = p + 1;
+            }
+        }
+        values.add(decode(from, end));
+        return values;
+    }
+
+    /**
+     * serialize the current row to a velocypack object, all values as Strings
+     *
+     * The object is written as a compact velocypack object straight from the
+     * bytes of the mapped file, so no String or VPackBuilder is created per
+     * row; the attribute names and prefixes are encoded once per array.
+     *
+     * @param attributes attribute name of every column, null to skip the column
+     * @param prefixes   a prefix of the value of every column, e.g., "person/"
+     *                   for document handles; null or null elements for none
+     * @return a velocypack object which can be inserted directly
+     */
+    public VPackSlice toVPack(String[] attributes, String[] prefixes) {
+        return toVPack(attributes, prefixes, null);
+    }
+
+    /**
+     * same as `toVPack(attributes, prefixes)`, with a "_key" made of the
+     * values of some columns joined by '-', e.g., `<src.id>-<dst.id>` for an
+     * edge as in `Utils.toKeyedEdge`, so the same row always gets the same key
+     *
+     * @param keyColumns the columns of the key, null for no "_key"
+     */
+    public VPackSlice toVPack(String[] attributes, String[] prefixes, int[] keyColumns) {
+        if (attributes != encodedAttributes || prefixes != encodedPrefixes) {
+            encode(attributes, prefixes);
+        }
+        // the members are written after room for the largest object header
+        int p = MAX_VARINT;
+        int items = 0;
+        if (keyColumns != null) {
+            int length = keyColumns.length - 1;
+            for (int column : keyColumns) {
+                length += fieldLength(column);
+            }
+            ensureCapacity(p + KEY.length + 9 + length);
+            System.arraycopy(KEY, 0, vpack, p, KEY.length);
+            p = putStringHeader(p + KEY.length, length);
+            for (int i = 0; i < keyColumns.length; i++) {
+                if (i > 0) {
+                    vpack[p++] = '-';
+                }
+                p = putField(p, keyColumns[i]);
+            }
+            items++;
+        }
+        for (int i = 0; i < fields && i < names.length; i++) {
+            byte[] name = names[i];
+            if (name == null) {
+                continue;
+            }
+            byte[] prefix = prefixBytes[i];
+            int length = prefix.length + fieldLength(i);
+            ensureCapacity(p + name.length + 9 + length);
+            System.arraycopy(name, 0, vpack, p, name.length);
+            p = putStringHeader(p + name.length, length);
+            System.arraycopy(prefix, 0, vpack, p, prefix.length);
+            p = putField(p + prefix.length, i);
+            items++;
+        }
+        if (items == 0) {
+            return new VPackSlice(new byte[] { EMPTY_OBJECT });
+        }
+
+        // compact object: type, byte length, members, number of members
+        // stored backwards
+        int members = p - MAX_VARINT;
+        int size = 1 + members + varintSize(items);
+        int lengthSize = 1;
+        while (varintSize(size + lengthSize) > lengthSize) {
+            lengthSize++;
+        }
+        size += lengthSize;
+        byte[] object = new byte[size];
+        object[0] = COMPACT_OBJECT;
+        for (int q = 1, value = size; q <= lengthSize; q++, value >>>= 7) {
+            object[q] = (byte) ((value & 0x7f) | (q < lengthSize ? 0x80 : 0));
+        }
+        System.arraycopy(vpack, MAX_VARINT, object, 1 + lengthSize, members);
+        for (int q = size - 1, value = items; value != 0; q--) {
+            int next = value >>> 7;
+            object[q] = (byte) ((value & 0x7f) | (next != 0 ? 0x80 : 0));
+            value = next;
+        }
+        return new VPackSlice(object);
+    }
+
+    /**
+     * @return an iterator over the remaining rows, which returns this parser
+     *         positioned at the next row; IOExceptions are rethrown unchecked
+     */
+    public Iterator<LdbcCsvParser> rows() {
+        return new Iterator<LdbcCsvParser>() {
+            private boolean ready;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready && !done) {
+                    try {
+                        done = !LdbcCsvParser.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    ready = !done;
+                }
+                return ready;
+            }
+
+            @Override
+            public LdbcCsvParser next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return LdbcCsvParser.this;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long offset) throws IOException {
+        long length = Math.min(windowSize, fileSize - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        windowStart = offset;
+        rowStart = 0;
+        cursor = 0;
+    }
+
+    private boolean isLastWindow() {
+        return windowStart + window.limit() >= fileSize;
+    }
+
+    // slice the row starting at `cursor` into fields
+    private int scanRow() {
+        int limit = window.limit();
+        int p = cursor;
+        rowStart = p;
+        int field = 0;
+        boolean closed = false;
+        starts[0] = p;
+        flags[0] = 0;
+        while (true) {
+            if (p >= limit) {
+                if (!isLastWindow()) {
+                    return REMAP;
+                }
+                if (p == rowStart) {
+                    return EOF;
+                }
+                // the last row has no line break
+                if (!closed) {
+                    ends[field] = p;
+                }
+                fields = field + 1;
+                cursor = p;
+                return ROW;
+            }
+            byte c = window.get(p);
+            if (c == '"' && !closed && p == starts[field]) {
+                // a quoted field, which may contain separators and doubled quotes
+                int q = p + 1;
+                int flag = QUOTED;
+                while (true) {
+                    if (q >= limit) {
+                        if (!isLastWindow()) {
+                            return REMAP;
+                        }
+                        // unterminated quote, take the rest of the file
+                        break;
+                    }
+                    if (window.get(q) == '"') {
+                        if (q + 1 >= limit && !isLastWindow()) {
+                            return REMAP;
+                        }
+                        if (q + 1 < limit && window.get(q + 1) == '"') {
+                            flag |= ESCAPED;
+                            q += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    q++;
+                }
+                starts[field] = p + 1;
+                ends[field] = q;
+                flags[field] = flag;
+                closed = true;
+                p = Math.min(q + 1, limit);
+                continue;
+            }
+            if (c == columnSeparator) {
+                if (!closed) {
+                    ends[field] = p;
+                }
+                field++;
+                if (field == starts.length) {
+                    grow();
+                }
+                starts[field] = p + 1;
+                flags[field] = 0;
+                closed = false;
+            } else if (c == '\n') {
+                if (field == 0 && p == rowStart) {
+                    // skip blank lines
+                    rowStart = p + 1;
+                    starts[0] = p + 1;
+                    p++;
+                    continue;
+                }
+                if (!closed) {
+                    ends[field] = p > starts[field] && window.get(p - 1) == '\r' ? p - 1 : p;
+                }
+                fields = field + 1;
+                cursor = p + 1;
+                return ROW;
+            }
+            p++;
+        }
+    }
+
+    private void grow() {
+        int size = starts.length * 2;
+        starts = Arrays.copyOf(starts, size);
+        ends = Arrays.copyOf(ends, size);
+        flags = Arrays.copyOf(flags, size);
+    }
+
+    // the attribute names as velocypack strings and the prefixes as UTF-8
+    private void encode(String[] attributes, String[] prefixes) {
+        names = new byte[attributes.length][];
+        prefixBytes = new byte[attributes.length][];
+        for (int i = 0; i < attributes.length; i++) {
+            if (attributes[i] != null) {
+                byte[] name = attributes[i].getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(name.length + 9);
+                int p = putStringHeader(0, name.length);
+                names[i] = Arrays.copyOf(vpack, p + name.length);
+                System.arraycopy(name, 0, names[i], p, name.length);
+            }
+            String prefix = prefixes != null && i < prefixes.length ? prefixes[i] : null;
+            prefixBytes[i] = prefix != null ? prefix.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+        encodedAttributes = attributes;
+        encodedPrefixes = prefixes;
+    }
+
+    // the header of a velocypack string of `length` bytes, returns the offset
+    // of the bytes of the string
+    private int putStringHeader(int p, int length) {
+        if (length <= 126) {
+            vpack[p++] = (byte) (0x40 + length);
+        } else {
+            vpack[p++] = (byte) 0xbf;
+            for (int i = 0; i < 8; i++) {
+                vpack[p++] = (byte) (length >>> (8 * i));
+            }
+        }
+        return p;
+    }
+
+    // the length of a field in bytes once doubled quotes are unescaped
+    private int fieldLength(int column) {
+        if (column >= fields) {
+            return 0;
+        }
+        int length = ends[column] - starts[column];
+        if ((flags[column] & ESCAPED) != 0) {
+            for (int q = starts[column]; q < ends[column]; q++) {
+                if (window.get(q) == '"') {
+                    length--;
+                    q++;
+                }
+            }
+        }
+        return length;
+    }
+
+    // copy a field, with doubled quotes unescaped, returns the offset after it
+    private int putField(int p, int column) {
+        if (column >= fields) {
+            return p;
+        }
+        int from = starts[column];
+        int to = ends[column];
+        if ((flags[column] & ESCAPED) != 0) {
+            for (int q = from; q < to; q++) {
+                byte c = window.get(q);
+                vpack[p++] = c;
+                if (c == '"') {
+                    q++;
+                }
+            }
+            return p;
+        }
+        window.get(from, vpack, p, to - from);
+        return p + to - from;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > vpack.length) {
+            vpack = Arrays.copyOf(vpack, Math.max(size, vpack.length * 2));
+        }
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private String decode(int from, int to) {
+        int length = to - from;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        window.get(from, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+package com.jasonqiu.demo;
+
+import java.util.Arrays;
+
+/**
+ * a set of primitive longs with open addressing and linear probing,
+ * without boxing: one long[] slot per entry, at most half of the slots in use
+ *
+ * 0 marks an empty slot, the value 0 itself is tracked by a separate flag
+ */
+public class LongHashSet {
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize the number of values expected, to avoid rehashing
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2 * expectedSize - 1, 16)) << 1;
+        slots = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return true if the value was not in the set before
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            if (added) {
+                size++;
+            }
+            return added;
+        }
+        int i = index(value);
+        while (slots[i] != 0) {
+            if (slots[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        size++;
+        if (2 * size > slots.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int i = index(value);
+        while (slots[i] != 0) {
+            if (slots[i] == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        containsZero = false;
+    }
+
+    // spread the bits of the value, as ids often share their low bits
+    private int index(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        mask = slots.length - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int i = index(value);
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+}
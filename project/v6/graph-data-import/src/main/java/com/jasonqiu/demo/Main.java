@@ -1,53 +1,348 @@
 package com.jasonqiu.demo;
 
 import com.arangodb.*;
+import com.arangodb.async.ArangoDBAsync;
 import com.arangodb.entity.EdgeDefinition;
+import com.arangodb.entity.LoadBalancingStrategy;
 import com.arangodb.entity.StreamTransactionEntity;
 import com.arangodb.mapping.ArangoJack;
 import com.arangodb.model.DocumentCreateOptions;
+import com.arangodb.model.OverwriteMode;
 import com.arangodb.model.StreamTransactionOptions;
+import com.fasterxml.jackson.databind.MappingIterator;
 
+import io.micrometer.core.instrument.Metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Main {
 
-    // host name and port
-    private static String hostname = "coordinator1";
+    // host names of the coordinators and port
+    private static String[] hostnames = { "coordinator1", "coordinator2" };
     private static int port = 8529;
     // the name of the database used in this example
     private static String dbName = "ldbc_graph";
+    // the number of rows sent in one batch insert when streaming
+    private static int chunkSize = 10000;
+    // the number of concurrent batch inserts in the parallel import
+    private static int workers = 4;
+    // the checkpoint of the checkpointed import, removed once the import has
+    // finished
+    private static String checkpointFile = "import.checkpoint";
+    // the edges of the streaming imports whose vertices are not in person.csv
+    private static String rejectFile = "knows.rejected.csv";
+    // the number of persons expected in person.csv, sizes the id set of the
+    // edge validation; more persons only cost a rehash
+    private static int expectedPersons = 2000;
+    // the directory of the exported files
+    private static String exportDir = "export";
+    // the statistics of the driver calls, logged at the end
+    private static DriverMetrics metrics = DriverMetrics.shared();
     private static Logger logger = LoggerFactory.getLogger(Main.class);
 
-    private static void cleanup() {
-        ArangoDB arangoDB = new ArangoDB.Builder()
-                .serializer(new ArangoJack())
-                .host(hostname, port)
-                .user("root")
-                .password("")
-                .build();
-        ArangoDatabase db = arangoDB.db(DbName.of(dbName));
+    private static void cleanup(ConnectionFactory connections) {
+        ArangoDatabase db = connections.db(dbName);
         if (db.exists()) {
             db.drop();
         }
-        arangoDB.shutdown();
     }
 
-    public static void main(String[] args) {
-        cleanup();
+    // bulk import graph data with stream transactions
+    // https://www.arangodb.com/docs/stable/drivers/java-examples-import-graph-data.html
+    private static void importInMemory(ArangoDatabase db) {
+        // get persons as nodes, and rename "id" to "_key" for insertion
+        List<Map<String, String>> persons = Utils.readCsvToJsonArray("resource/person.csv", '|');
+        persons.stream().forEach(Utils::toVertex);
+
+        // get knowsPersons as edges, and rename "src.id" to "_from", "dst.id" to "_to"
+        // we need to create document handlers
+        // "collectionName/_key", stored in "_id"
+        List<Map<String, String>> knowsPersons = Utils.readCsvToJsonArray("resource/person_knows_person.csv", '|');
+        knowsPersons.stream().forEach(edge -> Utils.toEdge(edge, "person"));
+
+        StreamTransactionEntity tx = metrics.beginStreamTransaction(db,
+                new StreamTransactionOptions().writeCollections("person", "knows"));
+
+        DocumentCreateOptions docCreateOptions = new DocumentCreateOptions().streamTransactionId(tx.getId());
 
-        // Connection, db and collections
-        ArangoDB arangoDB = new ArangoDB.Builder()
+        try {
+            metrics.insertDocuments(db.collection("person"), persons, docCreateOptions);
+            metrics.insertDocuments(db.collection("knows"), knowsPersons, docCreateOptions);
+            metrics.commitStreamTransaction(db, tx.getId());
+            logger.info("Collections \"person\" and \"knows\" imported from csv files.");
+        } catch (Exception e) {
+            metrics.abortStreamTransaction(db, tx.getId());
+            logger.error("Failed to import collections from csv files: " + e.getMessage());
+            // here we force exit the program if the collection cannot be imported
+            System.exit(-1);
+        }
+    }
+
+    // same as above, but rows are pulled lazily from the csv files and inserted
+    // in chunks of `chunkSize`, so the peak memory is bounded by the chunk size
+    // rather than by the file size
+    private static void importStreaming(ArangoDatabase db) {
+        try (MappingIterator<Map<String, String>> persons = Utils.readCsvToJsonIterator("resource/person.csv", '|');
+                MappingIterator<Map<String, String>> knowsPersons = Utils
+                        .readCsvToJsonIterator("resource/person_knows_person.csv", '|');
+                EdgeValidator validator = newEdgeValidator()) {
+            importInTransaction(db,
+                    persons, node -> {
+                        validator.addVertex(Long.parseLong(node.get("id")));
+                        return Utils.toVertex(node);
+                    },
+                    Utils.filter(knowsPersons, edge -> validator.accept(
+                            Long.parseLong(edge.get("src.id")), Long.parseLong(edge.get("dst.id")),
+                            () -> String.join("|", edge.values()))),
+                    edge -> Utils.toEdge(edge, "person"));
+        } catch (IOException e) {
+            logger.error("Failed to read csv files: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    // the streaming imports check every edge against the ids of person.csv
+    // before it is sent, edges with unknown vertices go to `rejectFile`
+    private static EdgeValidator newEdgeValidator() throws IOException {
+        return new EdgeValidator(Path.of(rejectFile), "src.id|dst.id|creationDate", expectedPersons);
+    }
+
+    // insert the rows of both iterators chunk by chunk in one stream transaction
+    private static <V, E> void importInTransaction(ArangoDatabase db,
+            Iterator<V> persons, Function<V, ?> toVertex,
+            Iterator<E> knowsPersons, Function<E, ?> toEdge) {
+        StreamTransactionEntity tx = metrics.beginStreamTransaction(db,
+                new StreamTransactionOptions().writeCollections("person", "knows"));
+
+        DocumentCreateOptions docCreateOptions = new DocumentCreateOptions().streamTransactionId(tx.getId());
+
+        try {
+            long personCount = Utils.forEachChunk(persons, toVertex, chunkSize,
+                    chunk -> metrics.insertDocuments(db.collection("person"), chunk, docCreateOptions));
+            long knowsCount = Utils.forEachChunk(knowsPersons, toEdge, chunkSize,
+                    chunk -> metrics.insertDocuments(db.collection("knows"), chunk, docCreateOptions));
+            metrics.commitStreamTransaction(db, tx.getId());
+            logger.info("Collections \"person\" ({} docs) and \"knows\" ({} docs) imported from csv files.",
+                    personCount, knowsCount);
+        } catch (Exception e) {
+            metrics.abortStreamTransaction(db, tx.getId());
+            logger.error("Failed to import collections from csv files: " + e.getMessage());
+            // here we force exit the program if the collection cannot be imported
+            System.exit(-1);
+        }
+    }
+
+    // chunks are inserted by a pool of workers without a stream transaction,
+    // as a stream transaction cannot be used by concurrent requests;
+    // edges are only inserted after all vertices have been inserted
+    private static void importParallel(ConnectionFactory connections) {
+        ParallelImporter importer = new ParallelImporter(connections, dbName, workers, chunkSize);
+        try (MappingIterator<Map<String, String>> persons = Utils.readCsvToJsonIterator("resource/person.csv", '|');
+                MappingIterator<Map<String, String>> knowsPersons = Utils
+                        .readCsvToJsonIterator("resource/person_knows_person.csv", '|')) {
+            importer.importCollection("person", persons, Utils::toVertex);
+            importer.importCollection("knows", knowsPersons, edge -> Utils.toEdge(edge, "person"));
+            logger.info("Collections \"person\" and \"knows\" imported from csv files.");
+        } catch (Exception e) {
+            logger.error("Failed to import collections from csv files: " + e.getMessage());
+            // here we force exit the program if the collection cannot be imported
+            System.exit(-1);
+        } finally {
+            importer.shutdown();
+        }
+    }
+
+    // chunks are inserted with the asynchronous driver API, so the csv files are
+    // parsed while previous chunks are on the wire; at most `workers` inserts are
+    // in flight, and edges are only inserted after all vertices have been inserted
+    private static void importAsync() {
+        // the requests are spread over the coordinators by the driver
+        ArangoDBAsync.Builder builder = new ArangoDBAsync.Builder()
                 .serializer(new ArangoJack())
-                .host(hostname, port)
                 .user("root")
                 .password("")
-                .build();
-        ArangoDatabase db = Utils.createDatabase(arangoDB, dbName);
+                .maxConnections(workers)
+                .loadBalancingStrategy(LoadBalancingStrategy.ROUND_ROBIN);
+        for (String hostname : hostnames) {
+            builder.host(hostname, port);
+        }
+        ArangoDBAsync arangoDBAsync = builder.build();
+        AsyncImporter importer = new AsyncImporter(arangoDBAsync.db(DbName.of(dbName)), workers, chunkSize);
+        try (MappingIterator<Map<String, String>> persons = Utils.readCsvToJsonIterator("resource/person.csv", '|');
+                MappingIterator<Map<String, String>> knowsPersons = Utils
+                        .readCsvToJsonIterator("resource/person_knows_person.csv", '|')) {
+            importer.importCollection("person", persons, Utils::toVertex);
+            importer.importCollection("knows", knowsPersons, edge -> Utils.toEdge(edge, "person"));
+            logger.info("Collections \"person\" and \"knows\" imported from csv files.");
+        } catch (Exception e) {
+            logger.error("Failed to import collections from csv files: " + e.getMessage());
+            // here we force exit the program if the collection cannot be imported
+            System.exit(-1);
+        } finally {
+            arangoDBAsync.shutdown();
+        }
+    }
+
+    // same as `importStreaming`, but the rows are parsed by the memory-mapped
+    // LdbcCsvParser and serialized straight to velocypack
+    private static void importMemoryMapped(ArangoDatabase db) {
+        try (LdbcCsvParser persons = new LdbcCsvParser(Path.of("resource/person.csv"), '|');
+                LdbcCsvParser knowsPersons = new LdbcCsvParser(Path.of("resource/person_knows_person.csv"), '|');
+                EdgeValidator validator = newEdgeValidator()) {
+            String[] vertexAttributes = Utils.vertexAttributes(persons.getHeader());
+            String[] edgeAttributes = Utils.edgeAttributes(knowsPersons.getHeader());
+            String[] edgePrefixes = Utils.edgePrefixes(knowsPersons.getHeader(), "person");
+            int idColumn = persons.columnIndex("id");
+            int srcColumn = knowsPersons.columnIndex("src.id");
+            int dstColumn = knowsPersons.columnIndex("dst.id");
+            importInTransaction(db,
+                    persons.rows(), row -> {
+                        validator.addVertex(row.getLong(idColumn));
+                        return row.toVPack(vertexAttributes, null);
+                    },
+                    Utils.filter(knowsPersons.rows(), row -> validator.accept(
+                            row.getLong(srcColumn), row.getLong(dstColumn), row::getRow)),
+                    row -> row.toVPack(edgeAttributes, edgePrefixes));
+        } catch (IOException e) {
+            logger.error("Failed to read csv files: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    // same as `importStreaming`, but the rows are mapped to the typed records
+    // Person and Knows, so numbers are stored as numbers and multi-value columns
+    // as arrays
+    private static void importTyped(ArangoDatabase db) {
+        try (MappingIterator<Person> persons = Utils.readCsvToRecordIterator("resource/person.csv", '|',
+                Person.class);
+                MappingIterator<Knows> knowsPersons = Utils
+                        .readCsvToRecordIterator("resource/person_knows_person.csv", '|', Knows.class);
+                EdgeValidator validator = newEdgeValidator()) {
+            importInTransaction(db,
+                    persons, person -> {
+                        validator.addVertex(person.id());
+                        return person;
+                    },
+                    Utils.filter(knowsPersons, knows -> validator.accept(knows.srcId(), knows.dstId(),
+                            () -> knows.srcId() + "|" + knows.dstId() + "|" + knows.creationDate())),
+                    Function.identity());
+        } catch (IOException e) {
+            logger.error("Failed to read csv files: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
 
-        // https://www.arangodb.com/2014/11/arangodb-java-driver-graphs/
+    // every chunk is committed in its own stream transaction, followed by a
+    // checkpoint of the position in the csv file, so neither the size nor the
+    // duration of a transaction grows with the file, and a restarted import
+    // continues from the first uncommitted chunk
+    private static void importCheckpointed(ArangoDatabase db) {
+        try {
+            ImportCheckpoint checkpoint = ImportCheckpoint.load(Path.of(checkpointFile));
+            importFileCheckpointed(db, checkpoint, "resource/person.csv", "person", false);
+            importFileCheckpointed(db, checkpoint, "resource/person_knows_person.csv", "knows", true);
+            checkpoint.delete();
+            logger.info("Collections \"person\" and \"knows\" imported from csv files.");
+        } catch (Exception e) {
+            logger.error("Failed to import collections from csv files, "
+                    + "re-run to resume from the last checkpoint: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    private static void importFileCheckpointed(ArangoDatabase db, ImportCheckpoint checkpoint, String file,
+            String collection, boolean edges) throws IOException {
+        long resumed = checkpoint.getRows(file);
+        long[] committed = { resumed };
+        // a chunk may be committed again if the program stops between the commit and
+        // the checkpoint, documents whose key already exists are then left alone;
+        // edges get the key `<src.id>-<dst.id>` so that they are found again
+        DocumentCreateOptions docCreateOptions = new DocumentCreateOptions().overwriteMode(OverwriteMode.ignore);
+        try (LdbcCsvParser parser = new LdbcCsvParser(Path.of(file), '|', checkpoint.getOffset(file),
+                LdbcCsvParser.DEFAULT_WINDOW_SIZE)) {
+            String[] attributes = edges ? Utils.edgeAttributes(parser.getHeader())
+                    : Utils.vertexAttributes(parser.getHeader());
+            String[] prefixes = edges ? Utils.edgePrefixes(parser.getHeader(), "person") : null;
+            int[] keys = edges ? Utils.edgeKeyColumns(parser.getHeader()) : null;
+            Utils.forEachChunk(parser.rows(), row -> row.toVPack(attributes, prefixes, keys), chunkSize, chunk -> {
+                // the parser is still positioned at the last row of the chunk
+                long offset = parser.position();
+                StreamTransactionEntity tx = metrics.beginStreamTransaction(db,
+                        new StreamTransactionOptions().writeCollections(collection));
+                try {
+                    metrics.insertDocuments(db.collection(collection), chunk,
+                            docCreateOptions.streamTransactionId(tx.getId()));
+                    metrics.commitStreamTransaction(db, tx.getId());
+                } catch (ArangoDBException e) {
+                    metrics.abortStreamTransaction(db, tx.getId());
+                    throw e;
+                }
+                committed[0] += chunk.size();
+                try {
+                    checkpoint.commit(file, offset, committed[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        logger.info("Collection \"{}\": {} docs imported, {} of them in a previous run.",
+                collection, committed[0], resumed);
+    }
+
+    // the database is kept, and only new or changed rows are written, with the
+    // given overwrite mode; edges get keys derived from their end vertices so
+    // that a re-import finds them again
+    private static void importIncremental(ArangoDatabase db, OverwriteMode overwriteMode) {
+        IncrementalImporter importer = new IncrementalImporter(db, overwriteMode, chunkSize);
+        try (MappingIterator<Map<String, String>> persons = Utils.readCsvToJsonIterator("resource/person.csv", '|');
+                MappingIterator<Map<String, String>> knowsPersons = Utils
+                        .readCsvToJsonIterator("resource/person_knows_person.csv", '|')) {
+            importer.importCollection("person", persons, Utils::toVertex);
+            importer.importCollection("knows", knowsPersons, edge -> Utils.toKeyedEdge(edge, "person"));
+        } catch (Exception e) {
+            logger.error("Failed to import collections from csv files: " + e.getMessage());
+            // here we force exit the program if the collection cannot be imported
+            System.exit(-1);
+        }
+    }
+
+    // the collections are written back to csv files with the columns of the
+    // LDBC files, or to NDJSON, by a pool of workers reading key ranges
+    private static void exportParallel(ConnectionFactory connections, ParallelExporter.Format format) {
+        ParallelExporter exporter = new ParallelExporter(connections, dbName, workers, chunkSize);
+        String suffix = format == ParallelExporter.Format.CSV ? ".csv" : ".ndjson";
+        try {
+            Files.createDirectories(Path.of(exportDir));
+            exporter.exportCollection("person", format, Path.of(exportDir, "person" + suffix),
+                    csvHeader("resource/person.csv"));
+            exporter.exportCollection("knows", format, Path.of(exportDir, "person_knows_person" + suffix),
+                    csvHeader("resource/person_knows_person.csv"));
+            logger.info("Collections \"person\" and \"knows\" exported to " + exportDir);
+        } catch (Exception e) {
+            logger.error("Failed to export collections: " + e.getMessage());
+            System.exit(-1);
+        } finally {
+            exporter.shutdown();
+        }
+    }
+
+    private static List<String> csvHeader(String file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(file))) {
+            return List.of(reader.readLine().split("\\|"));
+        }
+    }
+
+    // https://www.arangodb.com/2014/11/arangodb-java-driver-graphs/
+    private static void createGraph(ArangoDatabase db) {
         // Edge definitions of the graph
         List<EdgeDefinition> edgeDefinitions = new ArrayList<>();
         // one edge definition
@@ -59,42 +354,92 @@ public class Main {
 
         // collections will be auto created if they do not exist
         db.graph("socialNetwork").create(edgeDefinitions);
+    }
 
-        // bulk import graph data with stream transactions
-        // https://www.arangodb.com/docs/stable/drivers/java-examples-import-graph-data.html
-        {
-            // get persons as nodes, and rename "id" to "_key" for insertion
-            List<Map<String, String>> persons = Utils.readCsvToJsonArray("resource/person.csv", '|');
-
-            persons.stream().forEach(node -> node.put("_key", node.remove("id")));
-
-            // get knowsPersons as edges, and rename "src.id" to "_from", "dst.id" to "_to"
-            List<Map<String, String>> knowsPersons = Utils.readCsvToJsonArray("resource/person_knows_person.csv", '|');
-            knowsPersons.stream().forEach(edge -> {
-                // we need to create document handlers
-                // "collectionName/_key", stored in "_id"
-                edge.put("_from", "person/" + edge.remove("src.id"));
-                edge.put("_to", "person/" + edge.remove("dst.id"));
-            });
+    public static void main(String[] args) {
+        // "stream" imports the csv files chunk by chunk, "parallel" does the same with
+        // a pool of workers, "async" with the asynchronous driver API,
+        // "mmap" streams with the memory-mapped LdbcCsvParser,
+        // "typed" streams typed records instead of maps, "checkpoint" commits and
+        // checkpoints every chunk, "incremental" only writes new or changed rows,
+        // otherwise both files are read into memory at once;
+        // "export" writes the collections back to files instead
+        String mode = args.length > 0 ? args[0] : "memory";
 
-            StreamTransactionEntity tx = db.beginStreamTransaction(
-                    new StreamTransactionOptions().writeCollections("person", "knows"));
+        // a checkpointed import which has not finished is resumed
+        // instead of starting over from an empty database
+        boolean resume = mode.equals("checkpoint") && ImportCheckpoint.exists(Path.of(checkpointFile));
+        // an incremental import updates the existing database in place
+        boolean incremental = mode.equals("incremental");
+        // an export reads the existing database
+        boolean export = mode.equals("export");
 
-            DocumentCreateOptions docCreateOptions = new DocumentCreateOptions().streamTransactionId(tx.getId());
+        // Connections to all coordinators, db and collections, shared by the
+        // whole process; one connection per worker of the parallel import
+        ConnectionFactory.Builder builder = new ConnectionFactory.Builder()
+                .user("root")
+                .password("")
+                .strategy(ConnectionFactory.Strategy.LEAST_IN_FLIGHT)
+                .protocol(Protocol.VST)
+                .serializer(new MeteredSerialization(new ArangoJack()))
+                .maxConnections(workers)
+                .acquireTimeout(30_000);
+        for (String hostname : hostnames) {
+            builder.host(hostname, port);
+        }
+        ConnectionFactory connections = ConnectionFactory.shared(builder);
+        connections.warmUp();
+        // publish the driver metrics on the global registry of Micrometer,
+        // to which e.g. a JmxMeterRegistry can be added
+        metrics.bindTo(Metrics.globalRegistry);
+        if (!resume && !incremental && !export) {
+            cleanup(connections);
+        }
+
+        // the sequential imports stay on one coordinator, as their stream
+        // transactions do
+        ArangoDatabase db = connections.db(dbName);
+        if (resume) {
+            logger.info("Resuming the import from " + checkpointFile);
+        } else if (!db.exists()) {
+            db = Utils.createDatabase(connections.arango(), dbName);
+            createGraph(db);
+        }
 
-            try {
-                db.collection("person").insertDocuments(persons, docCreateOptions);
-                db.collection("knows").insertDocuments(knowsPersons, docCreateOptions);
-                db.commitStreamTransaction(tx.getId());
-                logger.info("Collections \"person\" and \"knows\" imported from csv files.");
-            } catch (Exception e) {
-                db.abortStreamTransaction(tx.getId());
-                logger.error("Failed to import collections from csv files: " + e.getMessage());
-                // here we force exit the program if the collection cannot be imported
-                System.exit(-1);
-            }
+        switch (mode) {
+            case "stream":
+                importStreaming(db);
+                break;
+            case "parallel":
+                importParallel(connections);
+                break;
+            case "async":
+                importAsync();
+                break;
+            case "mmap":
+                importMemoryMapped(db);
+                break;
+            case "typed":
+                importTyped(db);
+                break;
+            case "checkpoint":
+                importCheckpointed(db);
+                break;
+            case "incremental":
+                // the overwrite mode of changed rows: update (default), replace or ignore
+                importIncremental(db, OverwriteMode.valueOf(args.length > 1 ? args[1] : "update"));
+                break;
+            case "export":
+                // the format of the files: csv (default) or ndjson
+                exportParallel(connections,
+                        ParallelExporter.Format.valueOf((args.length > 1 ? args[1] : "csv").toUpperCase()));
+                break;
+            default:
+                importInMemory(db);
         }
 
-        arangoDB.shutdown();
+        metrics.report();
+        metrics.unbind(Metrics.globalRegistry);
+        connections.shutdown();
     }
 }
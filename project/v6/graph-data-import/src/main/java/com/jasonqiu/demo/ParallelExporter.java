@@ -0,0 +1,305 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.model.AqlQueryOptions;
+import com.arangodb.velocypack.VPackParser;
+import com.arangodb.velocypack.VPackSlice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * export a collection to a '|' separated csv file like the LDBC files, or to
+ * NDJSON, the reverse of the importers
+ *
+ * The collection is split into `workers` ranges of `_key`, each read by its
+ * own stream cursor on a connection of the ConnectionFactory and written
+ * through a fixed-size buffer to its own part file; the parts are then
+ * concatenated into the target file. The documents are never collected into
+ * a list, so the memory is bounded by the buffers and one cursor batch per
+ * worker, whatever the size of the collection.
+ *
+ * In the csv file "_key" is written as "id", and "_from" and "_to" as
+ * "src.id" and "dst.id" without the vertex collection, as in person.csv and
+ * person_knows_person.csv; arrays are joined by ';'.
+ */
+public class ParallelExporter {
+
+    private static Logger logger = LoggerFactory.getLogger(ParallelExporter.class);
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private static final char SEPARATOR = '|';
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ConnectionFactory connections;
+    private final String dbName;
+    private final int workers;
+    private final int batchSize;
+    private final ExecutorService pool;
+
+    /**
+     * @param connections the connections to the coordinators
+     * @param dbName      name of the database
+     * @param workers     number of key ranges read in parallel
+     * @param batchSize   number of documents per cursor batch
+     */
+    public ParallelExporter(ConnectionFactory connections, String dbName, int workers, int batchSize) {
+        this.connections = connections;
+        this.dbName = dbName;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pool = Executors.newFixedThreadPool(workers);
+    }
+
+    /**
+     * export all documents of a collection, returns only after every range
+     * has been written
+     *
+     * @param collection name of the collection
+     * @param format     CSV or NDJSON
+     * @param target     the file to write, replaced if it exists
+     * @param columns    the header of the csv file, e.g. "id", "firstName", ...;
+     *                   ignored for NDJSON
+     * @return the statistics of the export
+     */
+    public ExportStats exportCollection(String collection, Format format, Path target, List<String> columns)
+            throws IOException {
+        long start = System.nanoTime();
+        List<String> bounds = splitKeys(collection);
+        List<Path> parts = new ArrayList<>();
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            Path part = target.resolveSibling(target.getFileName() + ".part" + i);
+            String from = bounds.get(i);
+            String to = bounds.get(i + 1);
+            parts.add(part);
+            // a range is timed with the writing of its part file, the cursor
+            // fetches the batches while they are written
+            futures.add(pool.submit(() -> connections.execute(
+                    arangoDB -> DriverMetrics.shared().record("exportRange", collection, 0,
+                            () -> exportRange(arangoDB.db(DbName.of(dbName)), collection, from, to, format, columns,
+                                    part)))));
+        }
+
+        long count = 0;
+        try {
+            for (Future<Long> future : futures) {
+                count += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ArangoDBException(e);
+        } catch (ExecutionException e) {
+            throw new ArangoDBException(e.getCause());
+        }
+
+        String header = format == Format.CSV ? String.join(String.valueOf(SEPARATOR), columns) + "\n" : null;
+        long bytes = concat(target, header, parts);
+        ExportStats stats = new ExportStats(collection, count, bytes, System.nanoTime() - start);
+        logger.info(stats.toString());
+        return stats;
+    }
+
+    // the bounds of `workers` ranges of keys of about the same size; null
+    // stands for no lower or upper bound
+    private List<String> splitKeys(String collection) {
+        ArangoDatabase db = connections.db(dbName);
+        long count = DriverMetrics.shared().record("count", collection, 0,
+                () -> db.collection(collection).count().getCount());
+        List<String> bounds = new ArrayList<>();
+        bounds.add(null);
+        for (int i = 1; i < workers && count >= workers; i++) {
+            long offset = count * i / workers;
+            String key = DriverMetrics.shared().record("splitKeys", collection, 0, () -> {
+                try (ArangoCursor<String> cursor = db.query(
+                        "FOR d IN @@collection SORT d._key LIMIT @offset, 1 RETURN d._key",
+                        Map.of("@collection", collection, "offset", offset), null, String.class)) {
+                    return cursor.hasNext() ? cursor.next() : null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (key != null && !key.equals(bounds.get(bounds.size() - 1))) {
+                bounds.add(key);
+            }
+        }
+        bounds.add(null);
+        return bounds;
+    }
+
+    // write the documents with from <= _key < to to a part file, returns the
+    // number of documents
+    private long exportRange(ArangoDatabase db, String collection, String from, String to, Format format,
+            List<String> columns, Path part) {
+        StringBuilder query = new StringBuilder("FOR d IN @@collection");
+        Map<String, Object> bindVars = new HashMap<>();
+        bindVars.put("@collection", collection);
+        if (from != null) {
+            query.append(" FILTER d._key >= @from");
+            bindVars.put("from", from);
+        }
+        if (to != null) {
+            query.append(" FILTER d._key < @to");
+            bindVars.put("to", to);
+        }
+        query.append(" RETURN d");
+        AqlQueryOptions options = new AqlQueryOptions().batchSize(batchSize).stream(true);
+
+        VPackParser parser = new VPackParser.Builder().build();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        StringBuilder line = new StringBuilder();
+        long count = 0;
+        try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                ArangoCursor<VPackSlice> cursor = db.query(query.toString(), bindVars, options, VPackSlice.class)) {
+            while (cursor.hasNext()) {
+                VPackSlice document = cursor.next();
+                line.setLength(0);
+                if (format == Format.CSV) {
+                    appendCsv(line, document, columns);
+                } else {
+                    line.append(parser.toJson(document, true));
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > buffer.remaining()) {
+                    flush(buffer, out);
+                }
+                if (bytes.length > buffer.remaining()) {
+                    writeFully(ByteBuffer.wrap(bytes), out);
+                } else {
+                    buffer.put(bytes);
+                }
+                count++;
+            }
+            flush(buffer, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.debug("Exported {} docs of \"{}\" from {} to {}", count, collection, from, to);
+        return count;
+    }
+
+    private static void appendCsv(StringBuilder line, VPackSlice document, List<String> columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                line.append(SEPARATOR);
+            }
+            String column = columns.get(i);
+            VPackSlice value = switch (column) {
+                case "id" -> document.get("_key");
+                case "src.id" -> document.get("_from");
+                case "dst.id" -> document.get("_to");
+                default -> document.get(column);
+            };
+            if (column.equals("src.id") || column.equals("dst.id")) {
+                // the key of the vertex, without its collection
+                String handle = value.getAsString();
+                line.append(handle, handle.indexOf('/') + 1, handle.length());
+            } else {
+                appendValue(line, value);
+            }
+        }
+    }
+
+    private static void appendValue(StringBuilder line, VPackSlice value) {
+        if (value.isNone() || value.isNull()) {
+            return;
+        }
+        if (value.isArray()) {
+            // a list like "email" or "speaks", quoted as in the LDBC files
+            line.append('"');
+            for (int i = 0; i < value.size(); i++) {
+                if (i > 0) {
+                    line.append(';');
+                }
+                String element = value.get(i).isString() ? value.get(i).getAsString() : value.get(i).toString();
+                if (element.indexOf(';') >= 0) {
+                    // the files have no escape for the separator of the elements
+                    throw new IllegalArgumentException("List element \"" + element + "\" contains ';'");
+                }
+                line.append(element.replace("\"", "\"\""));
+            }
+            line.append('"');
+        } else if (value.isString()) {
+            String text = value.getAsString();
+            if (text.indexOf(SEPARATOR) >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0) {
+                line.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(text);
+            }
+        } else if (value.isInteger()) {
+            line.append(value.getAsLong());
+        } else {
+            line.append(value.toString());
+        }
+    }
+
+    // the header and all parts, in the order of the key ranges, into the
+    // target file; the parts are removed; returns the size of the file
+    private static long concat(Path target, String header, List<Path> parts) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (header != null) {
+                writeFully(ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8)), out);
+            }
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long position = 0; position < size;) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                Files.delete(part);
+            }
+            return out.size();
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        writeFully(buffer, out);
+        buffer.clear();
+    }
+
+    private static void writeFully(ByteBuffer bytes, FileChannel out) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * the number of documents exported from a collection, the size of the file
+     * and the time it took
+     */
+    public record ExportStats(String collection, long documents, long bytes, long nanos) {
+
+        public double docsPerSecond() {
+            return nanos == 0 ? 0 : documents * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Collection \"%s\": %d docs (%d bytes) exported in %.1f ms, %.0f docs/s",
+                    collection, documents, bytes, nanos / 1e6, docsPerSecond());
+        }
+    }
+}
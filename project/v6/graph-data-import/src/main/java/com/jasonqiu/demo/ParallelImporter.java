@@ -0,0 +1,122 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.entity.DocumentCreateEntity;
+import com.arangodb.entity.MultiDocumentEntity;
+import com.arangodb.model.DocumentCreateOptions;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * import csv rows into a collection with a pool of workers,
+ * each worker inserting one chunk at a time over the shared connection pools
+ * of the ConnectionFactory, spread over the coordinators
+ */
+public class ParallelImporter {
+
+    private static Logger logger = LoggerFactory.getLogger(ParallelImporter.class);
+
+    private final ConnectionFactory connections;
+    private final String dbName;
+    private final int chunkSize;
+    private final ExecutorService pool;
+    // bounds the number of chunks read ahead of the workers,
+    // so the memory stays bounded even if the coordinators are slow
+    private final Semaphore pending;
+
+    /**
+     * @param connections the connections to the coordinators
+     * @param dbName      name of the database
+     * @param workers     number of concurrent batch inserts
+     * @param chunkSize   number of rows in one batch insert
+     */
+    public ParallelImporter(ConnectionFactory connections, String dbName, int workers, int chunkSize) {
+        this.connections = connections;
+        this.dbName = dbName;
+        this.chunkSize = chunkSize;
+        this.pool = Executors.newFixedThreadPool(workers);
+        this.pending = new Semaphore(2 * workers);
+    }
+
+    /**
+     * split the rows into chunks and insert them in parallel,
+     * returns only after every chunk has been inserted
+     *
+     * @param collection name of the collection
+     * @param rows       the source iterator, only read by the calling thread
+     * @param transform  applied to every row before it is added to a chunk
+     * @return the statistics of the import
+     */
+    public <T, R> ImportStats importCollection(String collection, Iterator<T> rows, Function<T, R> transform) {
+        List<Future<Integer>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        long count = Utils.forEachChunk(rows, transform, chunkSize, chunk -> {
+            try {
+                pending.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ArangoDBException(e);
+            }
+            futures.add(pool.submit(() -> {
+                try {
+                    return connections.execute(
+                            arangoDB -> insertChunk(arangoDB.db(DbName.of(dbName)).collection(collection), chunk));
+                } finally {
+                    pending.release();
+                }
+            }));
+        });
+
+        long errors = 0;
+        for (Future<Integer> future : futures) {
+            try {
+                errors += future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ArangoDBException(e);
+            } catch (ExecutionException e) {
+                throw new ArangoDBException(e.getCause());
+            }
+        }
+        ImportStats stats = new ImportStats(collection, count, errors, System.nanoTime() - start);
+        logger.info(stats.toString());
+        return stats;
+    }
+
+    // insert one chunk, returns the number of documents rejected by the server
+    private static <R> int insertChunk(ArangoCollection coll, List<R> chunk) {
+        MultiDocumentEntity<DocumentCreateEntity<R>> result = DriverMetrics.shared().insertDocuments(coll, chunk,
+                new DocumentCreateOptions());
+        int errors = result.getErrors().size();
+        if (errors > 0) {
+            logger.warn("{} of {} documents rejected by collection \"{}\"; first error: {}",
+                    errors, chunk.size(), coll.name(), result.getErrors().iterator().next().getErrorMessage());
+        }
+        return errors;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * the number of documents imported into a collection and the time it took
+     */
+    public record ImportStats(String collection, long documents, long errors, long nanos) {
+
+        public double docsPerSecond() {
+            return nanos == 0 ? 0 : documents * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Collection \"%s\": %d docs (%d errors) in %.1f ms, %.0f docs/s",
+                    collection, documents, errors, nanos / 1e6, docsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.jasonqiu.demo;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * a row of person.csv with typed fields,
+ * read by Jackson from the csv file and serialized by ArangoJack as a vertex
+ * 
+ * "id" is only read from the csv file and stored as "_key";
+ * "email" and "speaks" are ';' separated lists in the csv file and arrays in
+ * the document
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Person(
+        @JsonProperty(value = "id", access = JsonProperty.Access.WRITE_ONLY) long id,
+        String firstName,
+        String lastName,
+        String gender,
+        long birthday,
+        @JsonProperty("birthday_day") int birthdayDay,
+        @JsonProperty("birthday_month") int birthdayMonth,
+        long creationDate,
+        String locationIP,
+        String browserUsed,
+        List<String> email,
+        List<String> speaks) {
+
+    @JsonProperty("_key")
+    public String key() {
+        return Long.toString(id);
+    }
+}
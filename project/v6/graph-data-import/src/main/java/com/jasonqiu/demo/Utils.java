@@ -4,6 +4,10 @@ import com.arangodb.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.StreamSupport;
 
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.dataformat.csv.*;
@@ -25,18 +29,184 @@ public class Utils {
     public static List<Map<String, String>> readCsvToJsonArray(String filename, char columnSeparator) {
         List<Map<String, String>> jsonArray = new ArrayList<>();
         try {
-            File input = new File(filename);
-            CsvSchema csv = CsvSchema.emptySchema().withHeader().withColumnSeparator(columnSeparator);
-            CsvMapper csvMapper = new CsvMapper();
-            MappingIterator<Map<String, String>> mappingIterator = csvMapper.reader().forType(Map.class).with(csv)
-                    .readValues(input);
-            jsonArray = mappingIterator.readAll();
+            jsonArray = readCsvToJsonIterator(filename, columnSeparator).readAll();
         } catch (Exception e) {
             e.printStackTrace();
         }
         return jsonArray;
     }
 
+    /**
+     * open a lazy iterator over the rows of a csv file with the help of Jackson,
+     * rows are only parsed when they are pulled from the iterator
+     * 
+     * @param filename        ".csv" file name
+     * @param columnSeparator the column separator used in the csv file, '|' here
+     * @return an iterator of JSON objects, to be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    public static MappingIterator<Map<String, String>> readCsvToJsonIterator(String filename, char columnSeparator)
+            throws IOException {
+        File input = new File(filename);
+        CsvSchema csv = CsvSchema.emptySchema().withHeader().withColumnSeparator(columnSeparator);
+        CsvMapper csvMapper = new CsvMapper();
+        return csvMapper.reader().forType(Map.class).with(csv).readValues(input);
+    }
+
+    /**
+     * open a lazy iterator over the rows of a csv file, mapped to typed records
+     * by Jackson; numeric fields are parsed to numbers and ';' separated values
+     * to lists, as declared by the fields of the record
+     * 
+     * @param filename        ".csv" file name
+     * @param columnSeparator the column separator used in the csv file, '|' here
+     * @param type            the record class, e.g., Person or Knows
+     * @return an iterator of records, to be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    public static <T> MappingIterator<T> readCsvToRecordIterator(String filename, char columnSeparator,
+            Class<T> type) throws IOException {
+        File input = new File(filename);
+        CsvSchema csv = CsvSchema.emptySchema().withHeader().withColumnSeparator(columnSeparator)
+                .withArrayElementSeparator(";");
+        CsvMapper csvMapper = new CsvMapper();
+        return csvMapper.readerFor(type).with(csv).readValues(input);
+    }
+
+    /**
+     * pull rows lazily from an iterator, transform them on the fly
+     * and hand them over in chunks of a fixed size,
+     * so that at most one chunk is held in memory at a time
+     * 
+     * @param rows      the source iterator
+     * @param transform applied to every row before it is added to a chunk
+     * @param chunkSize the maximum number of rows in a chunk
+     * @param consumer  called once for every chunk
+     * @return the number of rows consumed
+     */
+    public static <T, R> long forEachChunk(Iterator<T> rows, Function<T, R> transform, int chunkSize,
+            Consumer<List<R>> consumer) {
+        long count = 0;
+        List<R> chunk = new ArrayList<>(chunkSize);
+        while (rows.hasNext()) {
+            chunk.add(transform.apply(rows.next()));
+            count++;
+            if (chunk.size() == chunkSize) {
+                consumer.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+        return count;
+    }
+
+    /**
+     * a lazy view of an iterator with only the rows matching a predicate
+     * 
+     * @param rows      the source iterator
+     * @param predicate evaluated once per row, when the row is pulled
+     * @return an iterator of the matching rows
+     */
+    public static <T> Iterator<T> filter(Iterator<T> rows, Predicate<T> predicate) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false)
+                .filter(predicate)
+                .iterator();
+    }
+
+    /**
+     * turn a person row into a vertex document by renaming "id" to "_key"
+     * 
+     * @param node a row of person.csv
+     * @return the same map, modified in place
+     */
+    public static Map<String, String> toVertex(Map<String, String> node) {
+        node.put("_key", node.remove("id"));
+        return node;
+    }
+
+    /**
+     * turn a knows row into an edge document by renaming "src.id" to "_from"
+     * and "dst.id" to "_to", both as document handles "collectionName/_key"
+     * 
+     * @param edge             a row of person_knows_person.csv
+     * @param vertexCollection the collection of both end vertices
+     * @return the same map, modified in place
+     */
+    public static Map<String, String> toEdge(Map<String, String> edge, String vertexCollection) {
+        edge.put("_from", vertexCollection + "/" + edge.remove("src.id"));
+        edge.put("_to", vertexCollection + "/" + edge.remove("dst.id"));
+        return edge;
+    }
+
+    /**
+     * same as `toEdge`, with a "_key" derived from "src.id" and "dst.id",
+     * so the same edge gets the same key in every import
+     * 
+     * @param edge             a row of person_knows_person.csv
+     * @param vertexCollection the collection of both end vertices
+     * @return the same map, modified in place
+     */
+    public static Map<String, String> toKeyedEdge(Map<String, String> edge, String vertexCollection) {
+        edge.put("_key", edge.get("src.id") + "-" + edge.get("dst.id"));
+        return toEdge(edge, vertexCollection);
+    }
+
+    /**
+     * attribute names of the columns of person.csv for
+     * `LdbcCsvParser.toVPack`, with "id" renamed to "_key"
+     * 
+     * @param header the header of person.csv
+     * @return attribute name of every column
+     */
+    public static String[] vertexAttributes(List<String> header) {
+        String[] attributes = header.toArray(new String[0]);
+        attributes[header.indexOf("id")] = "_key";
+        return attributes;
+    }
+
+    /**
+     * attribute names of the columns of person_knows_person.csv for
+     * `LdbcCsvParser.toVPack`, with "src.id" renamed to "_from" and "dst.id" to
+     * "_to"
+     * 
+     * @param header the header of person_knows_person.csv
+     * @return attribute name of every column
+     */
+    public static String[] edgeAttributes(List<String> header) {
+        String[] attributes = header.toArray(new String[0]);
+        attributes[header.indexOf("src.id")] = "_from";
+        attributes[header.indexOf("dst.id")] = "_to";
+        return attributes;
+    }
+
+    /**
+     * the columns of the "_key" of an edge for `LdbcCsvParser.toVPack`,
+     * "src.id" and "dst.id" as in `toKeyedEdge`
+     * 
+     * @param header the header of person_knows_person.csv
+     * @return index of "src.id" and of "dst.id"
+     */
+    public static int[] edgeKeyColumns(List<String> header) {
+        return new int[] { header.indexOf("src.id"), header.indexOf("dst.id") };
+    }
+
+    /**
+     * value prefixes of the columns of person_knows_person.csv for
+     * `LdbcCsvParser.toVPack`, turning "src.id" and "dst.id" into document handles
+     * 
+     * @param header           the header of person_knows_person.csv
+     * @param vertexCollection the collection of both end vertices
+     * @return prefix of every column, null for none
+     */
+    public static String[] edgePrefixes(List<String> header, String vertexCollection) {
+        String[] prefixes = new String[header.size()];
+        prefixes[header.indexOf("src.id")] = vertexCollection + "/";
+        prefixes[header.indexOf("dst.id")] = vertexCollection + "/";
+        return prefixes;
+    }
+
     /**
      * create a new database
      * 
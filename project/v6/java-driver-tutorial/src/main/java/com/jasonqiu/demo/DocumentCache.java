@@ -0,0 +1,188 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.entity.DocumentDeleteEntity;
+import com.arangodb.entity.DocumentUpdateEntity;
+import com.arangodb.internal.util.ArangoSerializationFactory.Serializer;
+import com.arangodb.model.DocumentReadOptions;
+import com.arangodb.model.DocumentUpdateOptions;
+import com.arangodb.velocypack.VPackSlice;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a read-through cache in front of `ArangoCollection.getDocument`
+ *
+ * Documents are kept as velocypack, so one entry serves reads as BaseDocument,
+ * JsonNode or any other type, and its size is known exactly; the least
+ * recently used documents are evicted once the entries exceed `maxBytes`.
+ *
+ * A cached document is validated on every read by sending its `_rev` as
+ * If-None-Match: if it has not changed, the server answers 304 without a
+ * payload, otherwise the new version replaces the entry. Updates and deletes
+ * through this cache update or evict the entry right away.
+ */
+public class DocumentCache {
+
+    private static Logger logger = LoggerFactory.getLogger(DocumentCache.class);
+
+    private static final int NOT_MODIFIED = 304;
+    private static final int NOT_FOUND = 404;
+
+    private final ArangoCollection collection;
+    private final long maxBytes;
+    // access order, so the first entry is the least recently used one
+    private final LinkedHashMap<String, VPackSlice> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long notModified;
+    private long loads;
+    private long evictions;
+
+    /**
+     * @param collection ArangoCollection
+     * @param maxBytes   the maximum size of all cached documents in velocypack
+     */
+    public DocumentCache(ArangoCollection collection, long maxBytes) {
+        this.collection = collection;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * read a document, from the cache if the server confirms it is unchanged
+     *
+     * @param key  the key of the document
+     * @param type the type of the document, e.g. BaseDocument or ObjectNode
+     * @return the document, or null if it does not exist
+     */
+    public synchronized <T> T getDocument(String key, Class<T> type) {
+        VPackSlice cached = entries.get(key);
+        VPackSlice slice;
+        if (cached == null) {
+            slice = DriverMetrics.shared().getDocument(collection, key, VPackSlice.class,
+                    new DocumentReadOptions().catchException(true));
+        } else {
+            // the driver reports a 304 (and a 404) as an exception, and with
+            // catchException(true) both as null; the answer is told by its
+            // response code within the call, so a 304 is not counted as error
+            slice = DriverMetrics.shared().record("revalidateDocument", collection.name(), 0, () -> {
+                try {
+                    return collection.getDocument(key, VPackSlice.class, new DocumentReadOptions()
+                            .ifNoneMatch(cached.get("_rev").getAsString()).catchException(false));
+                } catch (ArangoDBException e) {
+                    if (e.getResponseCode() != null && e.getResponseCode() == NOT_MODIFIED) {
+                        return cached;
+                    }
+                    if (e.getResponseCode() != null && e.getResponseCode() == NOT_FOUND) {
+                        return null;
+                    }
+                    throw e;
+                }
+            });
+            if (slice == cached) {
+                notModified++;
+                return deserialize(cached, type);
+            }
+        }
+        if (slice == null) {
+            evict(key);
+            return null;
+        }
+        loads++;
+        return deserialize(put(key, slice), type);
+    }
+
+    /**
+     * partially update a document, and cache its new version
+     */
+    public synchronized <T> DocumentUpdateEntity<VPackSlice> updateDocument(String key, T value) {
+        DocumentUpdateEntity<VPackSlice> result = collection.updateDocument(key, value,
+                new DocumentUpdateOptions().returnNew(true), VPackSlice.class);
+        if (result.getNew() != null) {
+            put(key, result.getNew());
+        } else {
+            evict(key);
+        }
+        return result;
+    }
+
+    /**
+     * delete a document, and evict it
+     */
+    public synchronized DocumentDeleteEntity<Void> deleteDocument(String key) {
+        try {
+            return collection.deleteDocument(key);
+        } finally {
+            evict(key);
+        }
+    }
+
+    public synchronized void evict(String key) {
+        VPackSlice slice = entries.remove(key);
+        if (slice != null) {
+            bytes -= slice.getByteSize();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the number of reads answered with 304 and served from the cache
+     */
+    public synchronized long getNotModified() {
+        return notModified;
+    }
+
+    /**
+     * @return the number of reads which transferred the full document
+     */
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("DocumentCache: %d documents in %d bytes, %d not modified, %d loads, %d evictions",
+                entries.size(), bytes, notModified, loads, evictions);
+    }
+
+    private VPackSlice put(String key, VPackSlice slice) {
+        // copy the document out of the response buffer, which may be larger
+        VPackSlice copy = new VPackSlice(slice.toByteArray());
+        evict(key);
+        if (copy.getByteSize() > maxBytes) {
+            return copy;
+        }
+        entries.put(key, copy);
+        bytes += copy.getByteSize();
+        Iterator<VPackSlice> eldest = entries.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getByteSize();
+            eldest.remove();
+            evictions++;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Cached document \"{}\", {} bytes in total", key, bytes);
+        }
+        return copy;
+    }
+
+    // the serializer of the ArangoDB instance, e.g. ArangoJack, which also
+    // builds JsonNodes and records; the internal one only knows the driver types
+    private <T> T deserialize(VPackSlice slice, Class<T> type) {
+        return collection.db().util(Serializer.CUSTOM).deserialize(slice, type);
+    }
+}
@@ -3,11 +3,16 @@ package com.jasonqiu.demo;
 import com.arangodb.*;
 import com.arangodb.entity.BaseDocument;
 import com.arangodb.mapping.ArangoJack;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
+import io.micrometer.core.instrument.Metrics;
+
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -23,32 +28,34 @@ public class Main {
     private static String collectionName = "firstCollection";
     private static Logger logger = LoggerFactory.getLogger(Main.class);
 
-    private static void cleanup() {
-        ArangoDB arangoDB = new ArangoDB.Builder()
-                .serializer(new ArangoJack())
-                .host(hostname, port)
-                .user("root")
-                .password("")
-                .build();
-        ArangoDatabase db = arangoDB.db(DbName.of(dbName));
+    // the document "myKey" as a record, "_id" and "_rev" are not mapped
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record MyDocument(@JsonProperty("_key") String key, String a, int b) {
+    }
+
+    private static void cleanup(ConnectionFactory connections) {
+        ArangoDatabase db = connections.db(dbName);
         if (db.exists()) {
             db.drop();
         }
-        arangoDB.shutdown();
     }
 
     public static void main(String[] args) {
-        cleanup();
-
-        // Connection
-        ArangoDB arangoDB = new ArangoDB.Builder()
-                .serializer(new ArangoJack())
+        // Connection, shared by the whole process
+        ConnectionFactory connections = ConnectionFactory.shared(new ConnectionFactory.Builder()
                 .host(hostname, port)
                 .user("root")
                 .password("")
-                .build();
+                .protocol(Protocol.VST)
+                .serializer(new MeteredSerialization(new ArangoJack())));
+        connections.warmUp();
+        // publish the driver metrics on the global registry of Micrometer,
+        // to which e.g. a JmxMeterRegistry can be added
+        DriverMetrics.shared().bindTo(Metrics.globalRegistry);
+        cleanup(connections);
+
         // Creating a database
-        ArangoDatabase db = arangoDB.db(DbName.of(dbName));
+        ArangoDatabase db = connections.db(dbName);
         try {
             logger.info("Creating database...");
             db.create();
@@ -67,18 +74,22 @@ public class Main {
             logger.error("Failed to create collection: " + collectionName + "; " + e.getMessage());
         }
 
+        // A read-through cache of the documents, at most 1 MB of velocypack;
+        // a cached document is validated by its revision on every read
+        DocumentCache cache = new DocumentCache(collection, 1 << 20);
+
         // Creating a document
         String key = "myKey";
         BaseDocument doc = new BaseDocument(key);
         doc.addAttribute("a", "Foo");
         doc.addAttribute("b", 42);
         logger.info("Inserting document...");
-        collection.insertDocument(doc);
+        DriverMetrics.shared().insertDocument(collection, doc);
 
         // Read a document
         {
             logger.info("Reading document...");
-            BaseDocument readDocument = collection.getDocument(key, BaseDocument.class);
+            BaseDocument readDocument = cache.getDocument(key, BaseDocument.class);
             logger.info("Key: " + readDocument.getKey());
             logger.info("Attribute a: " + readDocument.getAttribute("a"));
             logger.info("Attribute b: " + readDocument.getAttribute("b"));
@@ -93,29 +104,40 @@ public class Main {
                     .put("a", "Bar")
                     .put("b", 53);
             logger.info("Inserting document from Jackson JsonNode...");
-            collection.insertDocument(jsonNode);
+            DriverMetrics.shared().insertDocument(collection, jsonNode);
         }
 
         // Read a document as Jackson JsonNode
         {
             logger.info("Reading document as Jackson JsonNode...");
-            JsonNode jsonNode = collection.getDocument(key, ObjectNode.class);
+            // served from the cache, the server only answers 304 Not Modified
+            JsonNode jsonNode = cache.getDocument(key, ObjectNode.class);
             logger.info("Key: " + jsonNode.get("_key").textValue());
             logger.info("Attribute a: " + jsonNode.get("a").textValue());
             logger.info("Attribute b: " + jsonNode.get("b").intValue());
         }
 
+        // Read a document as a record
+        {
+            logger.info("Reading document as a record...");
+            // also served from the cache, mapped by ArangoJack like the JsonNode
+            MyDocument myDocument = cache.getDocument(key, MyDocument.class);
+            logger.info("Key: " + myDocument.key());
+            logger.info("Attribute a: " + myDocument.a());
+            logger.info("Attribute b: " + myDocument.b());
+        }
+
         // Update a document
         {
             doc.addAttribute("c", "Bar");
             logger.info("Updating document ...");
-            collection.updateDocument(key, doc);
+            cache.updateDocument(key, doc);
         }
 
         // Read the document again
         {
             logger.info("Reading updated document ...");
-            BaseDocument updatedDocument = collection.getDocument(key, BaseDocument.class);
+            BaseDocument updatedDocument = cache.getDocument(key, BaseDocument.class);
             logger.info("Key: " + updatedDocument.getKey());
             logger.info("Attribute a: " + updatedDocument.getAttribute("a"));
             logger.info("Attribute b: " + updatedDocument.getAttribute("b"));
@@ -125,7 +147,8 @@ public class Main {
         // Delete a document
         {
             logger.info("Deleting document ...");
-            collection.deleteDocument(key);
+            cache.deleteDocument(key);
+            logger.info(cache.toString());
         }
 
         // Execute AQL queries
@@ -133,14 +156,15 @@ public class Main {
             for (int i = 0; i < 10; i++) {
                 BaseDocument value = new BaseDocument(String.valueOf(i));
                 value.addAttribute("name", "Homer");
-                collection.insertDocument(value);
+                DriverMetrics.shared().insertDocument(collection, value);
             }
 
             String query = "FOR t IN firstCollection FILTER t.name == @name RETURN t";
             Map<String, Object> bindVars = Collections.singletonMap("name", "Homer");
             logger.info("Executing read query ...");
-            ArangoCursor<BaseDocument> cursor = db.query(query, bindVars, null, BaseDocument.class);
-            cursor.forEach(aDocument -> logger.info("Key: " + aDocument.getKey()));
+            List<BaseDocument> documents = DriverMetrics.shared().record("query", "readByName", 0,
+                    () -> db.query(query, bindVars, null, BaseDocument.class).asListRemaining());
+            documents.forEach(aDocument -> logger.info("Key: " + aDocument.getKey()));
         }
 
         // Delete a document with AQL
@@ -149,10 +173,13 @@ public class Main {
                     + "REMOVE t IN firstCollection LET removed = OLD RETURN removed";
             Map<String, Object> bindVars = Collections.singletonMap("name", "Homer");
             logger.info("Executing delete query ...");
-            ArangoCursor<BaseDocument> cursor = db.query(query, bindVars, null, BaseDocument.class);
-            cursor.forEach(aDocument -> logger.info("Removed document " + aDocument.getKey()));
+            List<BaseDocument> removed = DriverMetrics.shared().record("query", "removeByName", 0,
+                    () -> db.query(query, bindVars, null, BaseDocument.class).asListRemaining());
+            removed.forEach(aDocument -> logger.info("Removed document " + aDocument.getKey()));
         }
 
-        arangoDB.shutdown();
+        DriverMetrics.shared().report();
+        DriverMetrics.shared().unbind(Metrics.globalRegistry);
+        connections.shutdown();
     }
 }
@@ -0,0 +1,116 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.ContentType;
+import com.arangodb.entity.BaseDocument;
+import com.arangodb.serde.ArangoSerde;
+import com.arangodb.serde.jackson.JacksonSerde;
+import com.arangodb.util.RawJson;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * serialize and deserialize every row of person.csv or
+ * person_knows_person.csv one document at a time with the default serde of
+ * the 7.x driver, as a BaseDocument, JsonNode or RawJson (the types of `Main`
+ * of `java-driver-tutorial`) or a Map, to velocypack or JSON
+ *
+ * The rows are the same documents as in `v6/benchmark` `SerdeBenchmark`, all
+ * attributes are strings, so the results of both driver generations can be
+ * compared. The payload size of all documents is printed once per trial; the
+ * allocation rate is measured with `-prof gc`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerdeBenchmark {
+
+    @Param({ "person", "knows" })
+    public String shape;
+
+    @Param({ "Map", "BaseDocument", "JsonNode", "RawJson" })
+    public String type;
+
+    @Param({ "vpack", "json" })
+    public String format;
+
+    private ArangoSerde serde;
+    private Class<?> documentClass;
+    private List<Object> documents;
+    private byte[][] payloads;
+
+    @Setup
+    public void setup() throws IOException {
+        serde = JacksonSerde.of(format.equals("json") ? ContentType.JSON : ContentType.VPACK);
+        documentClass = switch (type) {
+            case "BaseDocument" -> BaseDocument.class;
+            case "JsonNode" -> JsonNode.class;
+            case "RawJson" -> RawJson.class;
+            default -> Map.class;
+        };
+
+        List<Map<String, String>> rows;
+        if (shape.equals("person")) {
+            rows = readCsv("../../v6/graph-data-import/resource/person.csv");
+            rows.forEach(node -> node.put("_key", node.remove("id")));
+        } else {
+            rows = readCsv("../../v6/graph-data-import/resource/person_knows_person.csv");
+            rows.forEach(edge -> {
+                edge.put("_from", "person/" + edge.remove("src.id"));
+                edge.put("_to", "person/" + edge.remove("dst.id"));
+            });
+        }
+
+        documents = new ArrayList<>(rows.size());
+        payloads = new byte[rows.size()][];
+        long bytes = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            byte[] row = serde.serialize(rows.get(i));
+            documents.add(serde.deserialize(row, documentClass));
+            payloads[i] = row;
+            bytes += row.length;
+        }
+        System.out.printf("%n%s: %d documents, payload %d bytes %s%n", shape, rows.size(), bytes, format);
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (Object document : documents) {
+            blackhole.consume(serde.serialize(document));
+        }
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole blackhole) {
+        for (byte[] payload : payloads) {
+            blackhole.consume(serde.deserialize(payload, documentClass));
+        }
+    }
+
+    // the csv files of the LDBC data set: '|' separated with a header, lists
+    // are quoted and ';' separated, and kept as a string like the v6 maps
+    private static List<Map<String, String>> readCsv(String filename) throws IOException {
+        List<String> lines = Files.readAllLines(Path.of(filename));
+        String[] header = lines.get(0).split("\\|");
+        List<Map<String, String>> rows = new ArrayList<>(lines.size() - 1);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\\|", -1);
+            Map<String, String> row = new LinkedHashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                row.put(header[i], fields[i].replace("\"", ""));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
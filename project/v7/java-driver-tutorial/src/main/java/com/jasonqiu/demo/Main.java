@@ -6,6 +6,10 @@ import com.arangodb.util.RawJson;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.Map;
 
@@ -150,6 +154,18 @@ public class Main {
             cursor.forEach(aDocument -> logger.info("Key: " + aDocument.getKey()));
         }
 
+        // Export the collection as NDJSON, without deserializing the documents
+        {
+            logger.info("Exporting collection ...");
+            RawExporter exporter = new RawExporter(db, 1000, 1 << 16);
+            try (FileChannel out = FileChannel.open(Path.of(collectionName + ".ndjson"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                exporter.exportCollection(collectionName, out);
+            } catch (IOException e) {
+                logger.error("Failed to export collection: " + collectionName + "; " + e.getMessage());
+            }
+        }
+
         // Delete a document with AQL
         {
             String query = "FOR t IN firstCollection FILTER t.name == @name "
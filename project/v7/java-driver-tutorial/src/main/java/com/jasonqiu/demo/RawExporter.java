@@ -0,0 +1,141 @@
+package com.jasonqiu.demo;
+
+import com.arangodb.*;
+import com.arangodb.model.AqlQueryOptions;
+import com.arangodb.util.RawBytes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * export documents as they come from the server, one JSON document per line
+ * (NDJSON), to a file, socket or any other channel
+ *
+ * The documents are read as `RawBytes`: the driver still splits every cursor
+ * batch into its documents, but copies the JSON bytes of each one as they
+ * are, without a String, BaseDocument, Map or JsonNode. The bytes go into a
+ * buffer, which is written to the channel whenever it is full. The query runs
+ * as a stream cursor, so at most one batch is held in memory.
+ *
+ * The connection has to use JSON, as the default protocol does; with
+ * velocypack the bytes would be velocypack. The channel has to be blocking,
+ * e.g. a FileChannel or a SocketChannel in blocking mode.
+ */
+public class RawExporter {
+
+    private static Logger logger = LoggerFactory.getLogger(RawExporter.class);
+
+    private static final byte NEWLINE = '\n';
+
+    private final ArangoDatabase db;
+    private final int batchSize;
+    private final ByteBuffer buffer;
+
+    /**
+     * @param db         ArangoDatabase
+     * @param batchSize  documents per cursor batch
+     * @param bufferSize bytes written to the channel at a time
+     */
+    public RawExporter(ArangoDatabase db, int batchSize, int bufferSize) {
+        this.db = db;
+        this.batchSize = batchSize;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * write all documents of a collection
+     *
+     * @return the number of documents written
+     */
+    public long exportCollection(String collection, WritableByteChannel out) throws IOException {
+        return exportQuery("FOR d IN @@collection RETURN d", Collections.singletonMap("@collection", collection),
+                out);
+    }
+
+    /**
+     * write all results of a query, e.g. a filtered or projected export
+     *
+     * @return the number of results written
+     */
+    public long exportQuery(String query, Map<String, Object> bindVars, WritableByteChannel out)
+            throws IOException {
+        checkBlocking(out);
+        AqlQueryOptions options = new AqlQueryOptions().batchSize(batchSize).stream(true);
+        long count = 0;
+        long bytes = 0;
+        try (ArangoCursor<RawBytes> cursor = db.query(query, bindVars, options, RawBytes.class)) {
+            while (cursor.hasNext()) {
+                bytes += write(cursor.next(), out);
+                count++;
+            }
+            flush(out);
+        } finally {
+            // drop what a failed export left in the buffer
+            buffer.clear();
+        }
+        logger.info("Exported {} documents, {} bytes", count, bytes);
+        return count;
+    }
+
+    /**
+     * write one document, e.g. to proxy a document read
+     *
+     * @return false if the document does not exist
+     */
+    public boolean exportDocument(ArangoCollection collection, String key, WritableByteChannel out)
+            throws IOException {
+        checkBlocking(out);
+        RawBytes document = collection.getDocument(key, RawBytes.class);
+        if (document == null) {
+            return false;
+        }
+        try {
+            write(document, out);
+            flush(out);
+        } finally {
+            buffer.clear();
+        }
+        return true;
+    }
+
+    private static void checkBlocking(WritableByteChannel out) {
+        if (out instanceof SelectableChannel && !((SelectableChannel) out).isBlocking()) {
+            throw new IllegalArgumentException("Non-blocking channel " + out + ", configure it as blocking");
+        }
+    }
+
+    private int write(RawBytes document, WritableByteChannel out) throws IOException {
+        byte[] json = document.getValue();
+        if (json.length + 1 > buffer.remaining()) {
+            flush(out);
+        }
+        if (json.length + 1 > buffer.remaining()) {
+            // larger than the buffer, written as is
+            writeFully(ByteBuffer.wrap(json), out);
+            writeFully(ByteBuffer.wrap(new byte[] { NEWLINE }), out);
+        } else {
+            buffer.put(json).put(NEWLINE);
+        }
+        return json.length + 1;
+    }
+
+    private void flush(WritableByteChannel out) throws IOException {
+        buffer.flip();
+        writeFully(buffer, out);
+        buffer.clear();
+    }
+
+    // even a blocking channel may write only a part at a time
+    private static void writeFully(ByteBuffer bytes, WritableByteChannel out) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+}